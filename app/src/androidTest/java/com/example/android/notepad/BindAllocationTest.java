@@ -0,0 +1,161 @@
+package com.example.android.notepad;
+
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.database.MatrixCursor;
+import android.os.Debug;
+import android.util.SparseArray;
+import android.view.ContextThemeWrapper;
+
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Counts the objects allocated while the list adapters bind rows the way scrolling does: a few
+ * recycled view holders per view type, rebound to row after row. After one warm-up pass over
+ * the list, which fills the per-adapter caches, binding must not allocate per row.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BindAllocationTest {
+
+    private static final int ROWS = 500;
+    private static final int BINDS = 10000;
+    // View holders per view type, about what one screen of the list keeps around
+    private static final int HOLDERS_PER_TYPE = 12;
+
+    // Binding may touch the odd framework cache, but a single allocation per row would reach
+    // BINDS.
+    private static final int MAX_ALLOCATIONS = BINDS / 100;
+
+    private Context mContext;
+    private RecyclerView mParent;
+
+    @Before
+    public void setUp() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            mContext = new ContextThemeWrapper(ApplicationProvider.getApplicationContext(), R.style.AppTheme);
+            mParent = new RecyclerView(mContext);
+            mParent.setLayoutManager(new LinearLayoutManager(mContext));
+        });
+    }
+
+    @Test
+    public void bindingNotesDoesNotAllocate() {
+        MatrixCursor c = new MatrixCursor(new String[]{
+                NotePad.Notes._ID,
+                NotePad.Notes.COLUMN_NAME_TITLE,
+                NotePad.Notes.COLUMN_NAME_MODIFICATION_DATE,
+                NotePad.Notes.COLUMN_NAME_CATEGORY_ID,
+                NotePad.Notes.COLUMN_NAME_CATEGORY});
+        for (int i = 0; i < ROWS; i++) {
+            int category = i / 50;
+            c.addRow(new Object[]{i + 1, "Note " + i, 1_600_000_000_000L - i * 60_000L, category + 1,
+                    "Category " + category});
+        }
+        NoteListModel model = NoteListModel.append(NoteListModel.EMPTY, c);
+        c.close();
+
+        assertBindsWithoutAllocating(() -> {
+            NoteCategoryAdapter adapter = new NoteCategoryAdapter(mContext, new NoteCategoryAdapter.OnNoteListener() {
+                @Override
+                public void onNoteClick(NotesListFragment.NoteHolder note) {
+                }
+
+                @Override
+                public void onDeleteClick(NotesListFragment.NoteHolder note) {
+                }
+            });
+            adapter.submitModel(model);
+            return adapter;
+        });
+    }
+
+    @Test
+    public void bindingTodosDoesNotAllocate() {
+        String[] colors = {"#FFFFFF", "#FFF59D", "#A5D6A7", "#90CAF9"};
+        MatrixCursor c = new MatrixCursor(new String[]{
+                NotePad.Todos._ID,
+                NotePad.Todos.COLUMN_NAME_TEXT,
+                NotePad.Todos.COLUMN_NAME_COLOR,
+                NotePad.Todos.COLUMN_NAME_IS_COMPLETED});
+        for (int i = 0; i < ROWS; i++) {
+            c.addRow(new Object[]{i + 1, "Todo " + i, colors[i % colors.length], i % 3 == 0 ? 1 : 0});
+        }
+        TodoListModel model = TodoListModel.from(c);
+        c.close();
+
+        assertBindsWithoutAllocating(() -> {
+            TodoAdapter adapter = new TodoAdapter(mContext);
+            adapter.submitModel(model);
+            return adapter;
+        });
+    }
+
+    private interface AdapterFactory {
+        RecyclerView.Adapter<?> create();
+    }
+
+    /**
+     * Binds every row once, then counts the allocations of {@link #BINDS} more binds on the
+     * main thread, where the adapters run. The allocation counters are deprecated but still
+     * counted by ART, which is all this needs.
+     */
+    @SuppressWarnings("deprecation")
+    private void assertBindsWithoutAllocating(AdapterFactory factory) {
+        int[] allocations = new int[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            RecyclerView.Adapter<?> adapter = factory.create();
+            SparseArray<List<RecyclerView.ViewHolder>> holders = new SparseArray<>();
+            int[] next = new int[2];
+            for (int position = 0; position < adapter.getItemCount(); position++) {
+                bind(adapter, holders, next, position);
+            }
+
+            Debug.startAllocCounting();
+            Debug.resetThreadAllocCount();
+            try {
+                for (int i = 0; i < BINDS; i++) {
+                    bind(adapter, holders, next, i % adapter.getItemCount());
+                }
+                allocations[0] = Debug.getThreadAllocCount();
+            } finally {
+                Debug.stopAllocCounting();
+            }
+        });
+        assertTrue(allocations[0] + " allocations in " + BINDS + " binds", allocations[0] <= MAX_ALLOCATIONS);
+    }
+
+    /**
+     * Binds {@code position} to the next of the recycled holders of its view type, creating the
+     * holders during the warm-up pass.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void bind(RecyclerView.Adapter adapter, SparseArray<List<RecyclerView.ViewHolder>> holders,
+                      int[] next, int position) {
+        int type = adapter.getItemViewType(position);
+        List<RecyclerView.ViewHolder> pool = holders.get(type);
+        if (pool == null) {
+            pool = new ArrayList<>();
+            holders.put(type, pool);
+        }
+        RecyclerView.ViewHolder holder;
+        if (pool.size() < HOLDERS_PER_TYPE) {
+            holder = adapter.createViewHolder(mParent, type);
+            pool.add(holder);
+        } else {
+            holder = pool.get(next[type]++ % HOLDERS_PER_TYPE);
+        }
+        adapter.bindViewHolder(holder, position);
+    }
+}
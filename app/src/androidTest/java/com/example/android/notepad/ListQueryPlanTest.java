@@ -0,0 +1,131 @@
+package com.example.android.notepad;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Checks with EXPLAIN QUERY PLAN that the list queries the UI issues are read from the covering
+ * list indexes in order, without a temp B-tree sort and without going back to the table.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ListQueryPlanTest {
+
+    private static final String DATABASE_NAME = "list_query_plan_test.db";
+
+    // The columns the notes list reads, as the provider's projection map turns them into SQL
+    private static final String NOTES_LIST_COLUMNS = NotePad.Notes._ID + ", "
+            + NotePad.Notes.COLUMN_NAME_TITLE + ", "
+            + NotePad.Notes.COLUMN_NAME_MODIFICATION_DATE + ", "
+            + NotePad.Notes.COLUMN_NAME_CATEGORY_ID + ", "
+            + NotePadProvider.CATEGORY_NAME + " AS " + NotePad.Notes.COLUMN_NAME_CATEGORY;
+
+    private Context mContext;
+    private NotePadProvider.DatabaseHelper mHelper;
+    private SQLiteDatabase mDb;
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+        mHelper = new NotePadProvider.DatabaseHelper(mContext, DATABASE_NAME);
+        mDb = mHelper.getWritableDatabase();
+
+        for (int i = 0; i < 100; i++) {
+            ContentValues note = new ContentValues();
+            note.put(NotePad.Notes.COLUMN_NAME_TITLE, "Note " + i);
+            note.put(NotePad.Notes.COLUMN_NAME_NOTE, "Body " + i);
+            note.put(NotePad.Notes.COLUMN_NAME_CREATE_DATE, i);
+            note.put(NotePad.Notes.COLUMN_NAME_MODIFICATION_DATE, i);
+            note.put(NotePad.Notes.COLUMN_NAME_CATEGORY_ID, 1);
+            mDb.insert(NotePad.Notes.TABLE_NAME, null, note);
+
+            ContentValues todo = new ContentValues();
+            todo.put(NotePad.Todos.COLUMN_NAME_TEXT, "Todo " + i);
+            todo.put(NotePad.Todos.COLUMN_NAME_COLOR, "#FFFFFF");
+            todo.put(NotePad.Todos.COLUMN_NAME_CREATE_DATE, i);
+            todo.put(NotePad.Todos.COLUMN_NAME_MODIFICATION_DATE, i);
+            mDb.insert(NotePad.Todos.TABLE_NAME, null, todo);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.close();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void notesListIsReadFromCoveringIndex() {
+        assertOrderedCoveringScan(explain("SELECT " + NOTES_LIST_COLUMNS + " FROM " + NotePad.Notes.TABLE_NAME
+                + " ORDER BY " + NotePad.Notes.LIST_SORT_ORDER + " LIMIT 100"), NotePadProvider.NOTES_LIST_INDEX);
+    }
+
+    @Test
+    public void filteredNextPageIsReadFromCoveringIndex() {
+        // The second page of one category, continuing after the key of the last row read
+        assertOrderedCoveringScan(explain("SELECT " + NOTES_LIST_COLUMNS + " FROM " + NotePad.Notes.TABLE_NAME
+                + " WHERE " + NotePad.Notes.COLUMN_NAME_CATEGORY_ID + " = 1"
+                + " AND " + NotePad.Notes.COLUMN_NAME_CATEGORY_ID + " >= 1"
+                + " AND (" + NotePad.Notes.COLUMN_NAME_CATEGORY_ID + " > 1"
+                + " OR " + NotePad.Notes.COLUMN_NAME_MODIFICATION_DATE + " < 50"
+                + " OR (" + NotePad.Notes.COLUMN_NAME_MODIFICATION_DATE + " = 50"
+                + " AND " + NotePad.Notes._ID + " > 50))"
+                + " ORDER BY " + NotePad.Notes.LIST_SORT_ORDER + " LIMIT 100"), NotePadProvider.NOTES_LIST_INDEX);
+    }
+
+    @Test
+    public void largeTagFilterIsReadFromCoveringIndex() {
+        // A tag filter matching too many notes to list their ids looks each row up in the links
+        String link = "EXISTS (SELECT 1 FROM " + NotePad.NoteTags.TABLE_NAME
+                + " WHERE " + NotePad.NoteTags.COLUMN_NAME_NOTE_ID + " = " + NotePad.Notes.TABLE_NAME + "."
+                + NotePad.Notes._ID + " AND " + NotePad.NoteTags.COLUMN_NAME_TAG_ID;
+        String plan = explain("SELECT " + NOTES_LIST_COLUMNS + " FROM " + NotePad.Notes.TABLE_NAME
+                + " WHERE " + link + " = 1) AND " + link + " = 2)"
+                + " ORDER BY " + NotePad.Notes.LIST_SORT_ORDER + " LIMIT 100");
+        assertOrderedCoveringScan(plan, NotePadProvider.NOTES_LIST_INDEX);
+        assertTrue(plan, plan.contains("SEARCH " + NotePad.NoteTags.TABLE_NAME + " USING PRIMARY KEY"));
+    }
+
+    @Test
+    public void todoListIsReadFromCoveringIndex() {
+        assertOrderedCoveringScan(explain("SELECT " + NotePad.Todos._ID + ", " + NotePad.Todos.COLUMN_NAME_TEXT + ", "
+                + NotePad.Todos.COLUMN_NAME_COLOR + ", " + NotePad.Todos.COLUMN_NAME_IS_COMPLETED
+                + " FROM " + NotePad.Todos.TABLE_NAME
+                + " ORDER BY " + NotePad.Todos.DEFAULT_SORT_ORDER), NotePadProvider.TODOS_LIST_INDEX);
+    }
+
+    private static void assertOrderedCoveringScan(String plan, String index) {
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+        assertTrue(plan, plan.contains("COVERING INDEX " + index));
+    }
+
+    /**
+     * Returns the details of the query plan of {@code sql}, one step per line.
+     */
+    private String explain(String sql) {
+        StringBuilder plan = new StringBuilder();
+        Cursor c = mDb.rawQuery("EXPLAIN QUERY PLAN " + sql, null);
+        try {
+            int detail = c.getColumnIndexOrThrow("detail");
+            while (c.moveToNext()) {
+                plan.append(c.getString(detail)).append('\n');
+            }
+        } finally {
+            c.close();
+        }
+        return plan.toString();
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.android.notepad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that the editor's single-note queries, which read the body in slices, are answered by
+ * the provider's row cache with the same values SQLite returns, and that bodies too long to
+ * cache are still read correctly.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NoteCacheTest {
+
+    // The slice the editor's own query reads, and further slices it may read after it
+    private static final String FIRST_CHUNK = "substr(" + NotePad.Notes.COLUMN_NAME_NOTE + ", 1, 65536) AS "
+            + NotePad.Notes.COLUMN_NAME_NOTE;
+    private static final String[] CHUNKS = {
+            FIRST_CHUNK,
+            "substr(" + NotePad.Notes.COLUMN_NAME_NOTE + ", 3, 4) AS " + NotePad.Notes.COLUMN_NAME_NOTE,
+            "substr(" + NotePad.Notes.COLUMN_NAME_NOTE + ", 65537, 65536) AS " + NotePad.Notes.COLUMN_NAME_NOTE,
+            "substr(" + NotePad.Notes.COLUMN_NAME_NOTE + ", 1000000, 10) AS " + NotePad.Notes.COLUMN_NAME_NOTE,
+    };
+
+    private ContentResolver mResolver;
+    private final List<Uri> mNotes = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        mResolver = ApplicationProvider.getApplicationContext().getContentResolver();
+    }
+
+    @After
+    public void tearDown() {
+        for (Uri note : mNotes) {
+            mResolver.delete(note, null, null);
+        }
+    }
+
+    @Test
+    public void editorQueryIsAnsweredFromCache() {
+        // Surrogate pairs count as one character each, in SQLite as in the cache.
+        Uri note = insert("a😀b😁cdefgh");
+        String[] projection = editorProjection();
+        assertRowsEqual(queryCached(note, projection), queryUncached(note, projection));
+
+        int hits = noteCacheHits();
+        for (String chunk : CHUNKS) {
+            String[] slice = {chunk};
+            assertRowsEqual(queryCached(note, slice), queryUncached(note, slice));
+        }
+        assertEquals(hits + CHUNKS.length, noteCacheHits());
+    }
+
+    @Test
+    public void longBodyIsReadWithoutCache() {
+        StringBuilder body = new StringBuilder();
+        while (body.length() <= 100_000) {
+            body.append("😀 line ").append(body.length()).append('\n');
+        }
+        Uri note = insert(body.toString());
+        for (String chunk : CHUNKS) {
+            String[] slice = {chunk, NotePad.Notes.COLUMN_NAME_NOTE_LENGTH};
+            assertRowsEqual(queryCached(note, slice), queryUncached(note, slice));
+        }
+    }
+
+    private static String[] editorProjection() {
+        return new String[]{
+                NotePad.Notes._ID,
+                NotePad.Notes.COLUMN_NAME_TITLE,
+                FIRST_CHUNK,
+                NotePad.Notes.COLUMN_NAME_CATEGORY,
+                NotePad.Notes.COLUMN_NAME_NOTE_LENGTH};
+    }
+
+    private Uri insert(String body) {
+        ContentValues values = new ContentValues();
+        values.put(NotePad.Notes.COLUMN_NAME_TITLE, "Cached");
+        values.put(NotePad.Notes.COLUMN_NAME_NOTE, body);
+        Uri note = mResolver.insert(NotePad.Notes.CONTENT_URI, values);
+        assertNotNull(note);
+        mNotes.add(note);
+        return note;
+    }
+
+    /**
+     * Queries the note by its URI without a selection, which the provider may answer from the
+     * row cache.
+     */
+    private Cursor queryCached(Uri note, String[] projection) {
+        return mResolver.query(note, projection, null, null, null);
+    }
+
+    /**
+     * Queries the note through a selection on the notes table, which always goes to SQLite.
+     */
+    private Cursor queryUncached(Uri note, String[] projection) {
+        return mResolver.query(NotePad.Notes.CONTENT_URI, projection, NotePad.Notes._ID + " = ?",
+                new String[]{Long.toString(ContentUris.parseId(note))}, null);
+    }
+
+    private int noteCacheHits() {
+        Bundle stats = mResolver.call(NotePad.Notes.CONTENT_URI, NotePad.METHOD_GET_CACHE_STATS, null, null);
+        assertNotNull(stats);
+        return stats.getInt(NotePad.KEY_NOTE_CACHE_HITS);
+    }
+
+    private static void assertRowsEqual(Cursor actual, Cursor expected) {
+        try {
+            assertTrue(expected.moveToFirst());
+            assertTrue(actual.moveToFirst());
+            assertEquals(expected.getColumnCount(), actual.getColumnCount());
+            for (int i = 0; i < expected.getColumnCount(); i++) {
+                String column = expected.getColumnName(i);
+                assertEquals(column, expected.getString(i), actual.getString(actual.getColumnIndexOrThrow(column)));
+            }
+        } finally {
+            actual.close();
+            expected.close();
+        }
+    }
+}
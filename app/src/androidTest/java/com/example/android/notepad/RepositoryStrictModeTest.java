@@ -0,0 +1,106 @@
+package com.example.android.notepad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ContentProviderResult;
+import android.content.ContentValues;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Build;
+import android.os.StrictMode;
+import android.os.strictmode.Violation;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SdkSuppress;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the writes the UI makes through {@link NotePadRepository} from the main thread under a
+ * StrictMode policy that reports disk reads and writes, and checks that none are reported: the
+ * provider is only ever called from the repository's write thread.
+ */
+@RunWith(AndroidJUnit4.class)
+@SdkSuppress(minSdkVersion = Build.VERSION_CODES.P)
+public class RepositoryStrictModeTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private final List<Violation> mViolations = new ArrayList<>();
+
+    @Test
+    public void writesDoNotTouchTheDiskOnTheMainThread() throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        StrictMode.ThreadPolicy[] previous = new StrictMode.ThreadPolicy[1];
+        onMainThread(() -> {
+            previous[0] = StrictMode.getThreadPolicy();
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .penaltyListener(Runnable::run, violation -> {
+                        synchronized (mViolations) {
+                            mViolations.add(violation);
+                        }
+                    })
+                    .build());
+        });
+
+        try {
+            NotePadRepository repository = NotePadRepository.get(context);
+
+            ContentProviderResult[] inserted = new ContentProviderResult[1];
+            CountDownLatch insert = new CountDownLatch(1);
+            onMainThread(() -> {
+                ContentValues values = new ContentValues();
+                values.put(NotePad.Notes.COLUMN_NAME_TITLE, "StrictMode");
+                repository.insert(NotePad.Notes.CONTENT_URI, values, result -> {
+                    inserted[0] = result;
+                    insert.countDown();
+                });
+            });
+            assertTrue(insert.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            assertNotNull(inserted[0]);
+            Uri note = inserted[0].uri;
+            assertNotNull(note);
+
+            int[] changed = new int[2];
+            CountDownLatch writes = new CountDownLatch(2);
+            onMainThread(() -> {
+                ContentValues values = new ContentValues();
+                values.put(NotePad.Notes.COLUMN_NAME_NOTE, "Written off the main thread");
+                repository.update(note, values, result -> {
+                    changed[0] = result != null ? result.count : -1;
+                    writes.countDown();
+                });
+                repository.delete(note, result -> {
+                    changed[1] = result != null ? result.count : -1;
+                    writes.countDown();
+                });
+                repository.flush();
+            });
+            assertTrue(writes.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            assertEquals(1, changed[0]);
+            assertEquals(1, changed[1]);
+        } finally {
+            onMainThread(() -> StrictMode.setThreadPolicy(previous[0]));
+        }
+
+        synchronized (mViolations) {
+            assertTrue(mViolations.toString(), mViolations.isEmpty());
+        }
+    }
+
+    private static void onMainThread(Runnable runnable) {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(runnable);
+    }
+}
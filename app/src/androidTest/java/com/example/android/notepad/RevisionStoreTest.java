@@ -0,0 +1,212 @@
+package com.example.android.notepad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Records random edit sequences with {@link RevisionStore} on an in-memory database and checks
+ * that every revision rebuilds to exactly the body it was recorded with, before and after
+ * {@link RevisionStore#compact}, and that the revisions compaction drops can no longer be
+ * rebuilt.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RevisionStoreTest {
+
+    private static final long NOTE_ID = 1;
+
+    // Text an edit inserts: ASCII, CJK, and emoji that share their high surrogate
+    private static final String[] INSERTS = {
+            "a", "xyz", " ", "\n", "笔记", "😀", "😁", "😀😁", "a😀", "😁b", "一段比较长的文字，用来让差异超过一半 ",
+    };
+
+    private NotePadProvider.DatabaseHelper mHelper;
+    private SQLiteDatabase mDb;
+    private long mNow;
+
+    @Before
+    public void setUp() {
+        // No name, so the helper opens a private in-memory database.
+        mHelper = new NotePadProvider.DatabaseHelper(ApplicationProvider.getApplicationContext(), null);
+        mDb = mHelper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.close();
+    }
+
+    @Test
+    public void randomEditsRebuildExactly() {
+        Random random = new Random(18);
+        TreeMap<Long, String> bodies = new TreeMap<>();
+        String body = "😀 first line 😁";
+        for (int i = 0; i < 300; i++) {
+            String edited = edit(random, body);
+            record(bodies, body, edited);
+            body = edited;
+        }
+        assertRebuilds(bodies);
+
+        compact();
+        assertCompacted(bodies);
+
+        // The history keeps growing from the snapshot compaction left behind.
+        for (int i = 0; i < 100; i++) {
+            String edited = edit(random, body);
+            record(bodies, body, edited);
+            body = edited;
+        }
+        compact();
+        assertCompacted(bodies);
+    }
+
+    @Test
+    public void editsAtBothEndsOfSurrogatePairs() {
+        TreeMap<Long, String> bodies = new TreeMap<>();
+        // Each edit swaps an emoji at one end for one sharing its high surrogate, or adds or
+        // removes one, so the shared prefix or suffix ends halfway through a pair.
+        String[] sequence = {
+                "😀middle😀", "😁middle😀", "😁middle😁", "😀😁middle😁", "😀😁middle😁😀", "😁middle😁😀",
+                "😁middle😁", "middle", "😀", "😁", "", "😀",
+        };
+        for (int i = 1; i < sequence.length; i++) {
+            record(bodies, sequence[i - 1], sequence[i]);
+        }
+        assertRebuilds(bodies);
+    }
+
+    @Test
+    public void changeOutsideTheStoreRestartsTheChain() {
+        TreeMap<Long, String> bodies = new TreeMap<>();
+        record(bodies, "one", "one two");
+        record(bodies, "one two", "one two three");
+        // The note was changed without going through the store before this edit.
+        record(bodies, "one two three four", "one two three four five");
+        assertRebuilds(bodies);
+    }
+
+    @Test
+    public void missingRevisionIsNull() {
+        TreeMap<Long, String> bodies = new TreeMap<>();
+        record(bodies, "one", "one two");
+        record(bodies, "one two", "one two three");
+        assertNull(RevisionStore.rebuild(mDb, NOTE_ID, bodies.lastKey() + 1));
+        assertNull(RevisionStore.rebuild(mDb, NOTE_ID + 1, bodies.lastKey()));
+    }
+
+    /**
+     * Applies one random edit to {@code body}: an insertion, deletion or replacement at the
+     * start, at the end, or somewhere in between, never splitting a surrogate pair.
+     */
+    private static String edit(Random random, String body) {
+        int start;
+        switch (random.nextInt(3)) {
+            case 0:
+                start = 0;
+                break;
+            case 1:
+                start = body.length();
+                break;
+            default:
+                start = random.nextInt(body.length() + 1);
+                break;
+        }
+        int end = Math.min(body.length(), start + random.nextInt(4));
+        if (start == body.length() && random.nextBoolean()) {
+            // Take text off the end rather than adding to it
+            start = Math.max(0, start - random.nextInt(4));
+        }
+        start = pairStart(body, start);
+        end = pairStart(body, end);
+        String inserted = random.nextInt(4) == 0 ? "" : INSERTS[random.nextInt(INSERTS.length)];
+        String edited = body.substring(0, start) + inserted + body.substring(end);
+        // The store records nothing for an edit that changes nothing
+        return edited.equals(body) ? edited + "." : edited;
+    }
+
+    /**
+     * Moves {@code index} back to the start of the surrogate pair it points into, if any.
+     */
+    private static int pairStart(String text, int index) {
+        if (index > 0 && index < text.length() && Character.isLowSurrogate(text.charAt(index))) {
+            return index - 1;
+        }
+        return index;
+    }
+
+    /**
+     * Records the change from {@code oldText} to {@code newText} in a transaction, as the provider
+     * does, and adds the revisions it wrote to {@code bodies}.
+     */
+    private void record(TreeMap<Long, String> bodies, String oldText, String newText) {
+        long before = lastRevisionId();
+        mDb.beginTransaction();
+        try {
+            RevisionStore.record(mDb, NOTE_ID, oldText, ++mNow, newText, ++mNow);
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
+        long last = lastRevisionId();
+        assertTrue(last > before);
+        if (last - before == 2) {
+            // The chain restarted with a snapshot of the body being replaced.
+            bodies.put(last - 1, oldText);
+        } else {
+            assertEquals(1, last - before);
+        }
+        bodies.put(last, newText);
+    }
+
+    private void compact() {
+        mDb.beginTransaction();
+        try {
+            RevisionStore.compact(mDb, NOTE_ID);
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
+    }
+
+    private long lastRevisionId() {
+        return DatabaseUtils.longForQuery(mDb, "SELECT ifnull(max(" + NotePad.Revisions._ID + "), 0) FROM "
+                + NotePad.Revisions.TABLE_NAME, null);
+    }
+
+    private void assertRebuilds(Map<Long, String> bodies) {
+        for (Map.Entry<Long, String> revision : bodies.entrySet()) {
+            assertEquals("revision " + revision.getKey(), revision.getValue(),
+                    RevisionStore.rebuild(mDb, NOTE_ID, revision.getKey()));
+        }
+    }
+
+    /**
+     * Checks that the newest {@link RevisionStore#MAX_REVISIONS} revisions still rebuild exactly
+     * and that the older ones are gone.
+     */
+    private void assertCompacted(TreeMap<Long, String> bodies) {
+        int kept = 0;
+        for (Long id : bodies.descendingKeySet()) {
+            String expected = kept++ < RevisionStore.MAX_REVISIONS ? bodies.get(id) : null;
+            assertEquals("revision " + id, expected, RevisionStore.rebuild(mDb, NOTE_ID, id));
+        }
+        assertEquals(RevisionStore.MAX_REVISIONS, DatabaseUtils.queryNumEntries(mDb, NotePad.Revisions.TABLE_NAME,
+                NotePad.Revisions.COLUMN_NAME_NOTE_ID + " = ?", new String[]{Long.toString(NOTE_ID)}));
+    }
+}
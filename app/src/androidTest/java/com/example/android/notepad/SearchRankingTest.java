@@ -0,0 +1,91 @@
+package com.example.android.notepad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that search results are ranked by the number of hits, not by how far into the note
+ * the hits are.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SearchRankingTest {
+
+    private static final String TERM = "qzxrankterm";
+
+    private ContentResolver mResolver;
+    private final List<Uri> mNotes = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        mResolver = ApplicationProvider.getApplicationContext().getContentResolver();
+    }
+
+    @After
+    public void tearDown() {
+        for (Uri note : mNotes) {
+            mResolver.delete(note, null, null);
+        }
+    }
+
+    @Test
+    public void moreHitsRankFirstWhereverTheyAre() {
+        // Three hits at the top of a short note
+        long shortNote = insert(TERM + " " + TERM + " " + TERM);
+        // Two hits a megabyte into a long note, whose offsets are written with many more digits.
+        // It is also the newer note, so it would win a tie.
+        StringBuilder body = new StringBuilder();
+        while (body.length() < 1_000_000) {
+            body.append("lorem ");
+        }
+        body.append(TERM).append(' ').append(TERM);
+        long longNote = insert(body.toString());
+
+        Uri search = NotePad.NoteFilter.EMPTY.withText(TERM)
+                .appendTo(NotePad.Notes.SEARCH_URI.buildUpon()).build();
+        List<Long> ranked = new ArrayList<>();
+        Cursor c = mResolver.query(search, new String[]{NotePad.Notes._ID}, null, null, null);
+        assertNotNull(c);
+        try {
+            while (c.moveToNext()) {
+                long id = c.getLong(0);
+                if (id == shortNote || id == longNote) {
+                    ranked.add(id);
+                }
+            }
+        } finally {
+            c.close();
+        }
+
+        List<Long> expected = new ArrayList<>();
+        expected.add(shortNote);
+        expected.add(longNote);
+        assertEquals(expected, ranked);
+    }
+
+    private long insert(String body) {
+        ContentValues values = new ContentValues();
+        values.put(NotePad.Notes.COLUMN_NAME_TITLE, "");
+        values.put(NotePad.Notes.COLUMN_NAME_NOTE, body);
+        Uri note = mResolver.insert(NotePad.Notes.CONTENT_URI, values);
+        assertNotNull(note);
+        mNotes.add(note);
+        return ContentUris.parseId(note);
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.android.notepad;
+
+import static org.junit.Assert.assertTrue;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Measures list query latency on several reader threads, first on an idle database and then
+ * while another thread keeps committing long write transactions. With write-ahead logging the
+ * readers get their own connections and never wait for the writer, so their latency stays
+ * about the same; with the rollback journal they would queue behind every transaction.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WalReadLatencyTest {
+
+    private static final String TAG = "WalReadLatencyTest";
+    private static final String DATABASE_NAME = "wal_read_latency_test.db";
+
+    private static final int NOTE_COUNT = 2000;
+    private static final int READER_COUNT = 3;
+    private static final int QUERIES_PER_READER = 200;
+
+    // Rows rewritten per write transaction, and how long the transaction stays open after them
+    private static final int ROWS_PER_WRITE = 200;
+    private static final long WRITE_HOLD_MS = 100;
+
+    // Readers may slow down by this much from competing for the CPU, but not by a whole write
+    private static final long LATENCY_SLACK_NANOS = TimeUnit.MILLISECONDS.toNanos(WRITE_HOLD_MS / 4);
+
+    private Context mContext;
+    private NotePadProvider.DatabaseHelper mHelper;
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+        mHelper = new NotePadProvider.DatabaseHelper(mContext, DATABASE_NAME);
+
+        SQLiteDatabase db = mHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < NOTE_COUNT; i++) {
+                ContentValues values = new ContentValues();
+                values.put(NotePad.Notes.COLUMN_NAME_TITLE, "Note " + i);
+                values.put(NotePad.Notes.COLUMN_NAME_NOTE, body(i));
+                values.put(NotePad.Notes.COLUMN_NAME_CREATE_DATE, i);
+                values.put(NotePad.Notes.COLUMN_NAME_MODIFICATION_DATE, i);
+                values.put(NotePad.Notes.COLUMN_NAME_CATEGORY_ID, 1);
+                db.insert(NotePad.Notes.TABLE_NAME, null, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.close();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void readLatencyStaysFlatDuringWrites() throws Exception {
+        // The first round opens the pooled read connections and warms the page cache.
+        readConcurrently();
+        long idle = percentile95(readConcurrently());
+
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CountDownLatch firstWrite = new CountDownLatch(1);
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        Future<Integer> writes = writer.submit(() -> {
+            SQLiteDatabase db = mHelper.getWritableDatabase();
+            int transactions = 0;
+            while (writing.get()) {
+                db.beginTransaction();
+                try {
+                    for (int i = 0; i < ROWS_PER_WRITE; i++) {
+                        long id = 1 + (long) (transactions * ROWS_PER_WRITE + i) % NOTE_COUNT;
+                        ContentValues values = new ContentValues();
+                        values.put(NotePad.Notes.COLUMN_NAME_NOTE, body(transactions + i));
+                        values.put(NotePad.Notes.COLUMN_NAME_MODIFICATION_DATE, NOTE_COUNT + transactions);
+                        db.update(NotePad.Notes.TABLE_NAME, values, NotePad.Notes._ID + " = ?",
+                                new String[]{Long.toString(id)});
+                    }
+                    firstWrite.countDown();
+                    SystemClock.sleep(WRITE_HOLD_MS);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                transactions++;
+            }
+            return transactions;
+        });
+
+        long[] latencies;
+        try {
+            assertTrue(firstWrite.await(10, TimeUnit.SECONDS));
+            latencies = readConcurrently();
+        } finally {
+            writing.set(false);
+            writer.shutdown();
+        }
+        int transactions = writes.get(30, TimeUnit.SECONDS);
+        long busy = percentile95(latencies);
+
+        Log.i(TAG, "p95 list query: idle " + idle / 1000 + " us, during " + transactions
+                + " write transactions " + busy / 1000 + " us");
+        assertTrue("p95 rose from " + idle + " ns to " + busy + " ns",
+                busy <= 2 * idle + LATENCY_SLACK_NANOS);
+    }
+
+    /**
+     * Runs the first notes list page on {@link #READER_COUNT} threads at once and returns the
+     * latency of every query, in nanoseconds.
+     */
+    private long[] readConcurrently() throws Exception {
+        ExecutorService readers = Executors.newFixedThreadPool(READER_COUNT);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            Future<?>[] futures = new Future<?>[READER_COUNT];
+            long[] latencies = new long[READER_COUNT * QUERIES_PER_READER];
+            for (int r = 0; r < READER_COUNT; r++) {
+                int offset = r * QUERIES_PER_READER;
+                futures[r] = readers.submit(() -> {
+                    start.await();
+                    SQLiteDatabase db = mHelper.getReadableDatabase();
+                    for (int i = 0; i < QUERIES_PER_READER; i++) {
+                        long begin = System.nanoTime();
+                        Cursor c = db.query(NotePad.Notes.TABLE_NAME, new String[]{
+                                        NotePad.Notes._ID,
+                                        NotePad.Notes.COLUMN_NAME_TITLE,
+                                        NotePad.Notes.COLUMN_NAME_MODIFICATION_DATE,
+                                        NotePad.Notes.COLUMN_NAME_CATEGORY_ID},
+                                null, null, null, null, NotePad.Notes.LIST_SORT_ORDER, "100");
+                        try {
+                            // Filling the window is what runs the statement.
+                            c.getCount();
+                        } finally {
+                            c.close();
+                        }
+                        latencies[offset + i] = System.nanoTime() - begin;
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+            return latencies;
+        } finally {
+            readers.shutdown();
+        }
+    }
+
+    private static long percentile95(long[] latencies) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length * 95 / 100];
+    }
+
+    private static String body(int seed) {
+        StringBuilder body = new StringBuilder(4096);
+        while (body.length() < 4096) {
+            body.append("Line ").append(seed).append(" of a note body long enough to span pages.\n");
+        }
+        return body.toString();
+    }
+}
@@ -3,12 +3,16 @@ package com.example.android.notepad;
 import android.os.Bundle;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.fragment.app.Fragment;
+import androidx.fragment.app.FragmentManager;
 import androidx.fragment.app.FragmentTransaction;
 
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 
 public class MainActivity extends AppCompatActivity {
 
+    private static final String TAG_NOTES = "notes";
+    private static final String TAG_TODOS = "todos";
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -19,25 +23,42 @@ public class MainActivity extends AppCompatActivity {
 
         // Load the default fragment
         if (savedInstanceState == null) {
-            getSupportFragmentManager().beginTransaction().replace(R.id.fragment_container,
-                    new NotesListFragment()).commit();
+            getSupportFragmentManager().beginTransaction().add(R.id.fragment_container,
+                    new NotesListFragment(), TAG_NOTES).commit();
+        }
+    }
+
+    /**
+     * Shows the tab with {@code tag} and hides the other one. Each tab is created the first
+     * time it is shown and then kept, with its view, loader and scroll position, so switching
+     * back to it neither rebuilds the view nor queries again.
+     */
+    private void showTab(String tag) {
+        FragmentManager fm = getSupportFragmentManager();
+        FragmentTransaction transaction = fm.beginTransaction().setReorderingAllowed(true);
+        for (String other : new String[]{TAG_NOTES, TAG_TODOS}) {
+            Fragment fragment = fm.findFragmentByTag(other);
+            if (!other.equals(tag) && fragment != null && !fragment.isHidden()) {
+                transaction.hide(fragment);
+            }
         }
+        Fragment selected = fm.findFragmentByTag(tag);
+        if (selected == null) {
+            selected = TAG_NOTES.equals(tag) ? new NotesListFragment() : new TodoFragment();
+            transaction.add(R.id.fragment_container, selected, tag);
+        } else if (selected.isHidden()) {
+            transaction.show(selected);
+        }
+        transaction.commit();
     }
 
     private BottomNavigationView.OnNavigationItemSelectedListener navListener =
             item -> {
-                Fragment selectedFragment = null;
-
                 int id = item.getItemId();
                 if (id == R.id.nav_notes) {
-                    selectedFragment = new NotesListFragment();
+                    showTab(TAG_NOTES);
                 } else if (id == R.id.nav_todos) {
-                    selectedFragment = new TodoFragment();
-                }
-
-                if (selectedFragment != null) {
-                    getSupportFragmentManager().beginTransaction().replace(R.id.fragment_container,
-                            selectedFragment).commit();
+                    showTab(TAG_TODOS);
                 }
 
                 return true;
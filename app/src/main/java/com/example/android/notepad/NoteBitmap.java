@@ -0,0 +1,430 @@
+package com.example.android.notepad;
+
+import java.util.Arrays;
+
+/**
+ * A compressed set of note ids, laid out like a Roaring bitmap.
+ *
+ * Ids are split into their high and low 16 bits. Each distinct high half owns a container of
+ * low halves, and the containers are kept sorted by their high half. A container holding up to
+ * {@link #MAX_ARRAY} values is a sorted char array; a fuller one is a bitset of 65536 bits. Either
+ * way a container never takes more than 8 KB, and a set of ids that are close together, which
+ * note ids are, takes about two bytes per id.
+ *
+ * Intersections and unions walk both bitmaps container by container, so their cost follows the
+ * number of containers and the size of the smaller side rather than the range of ids. Instances
+ * are not thread-safe.
+ */
+final class NoteBitmap {
+
+    // Largest number of values kept in an array container; a bitset is smaller past this
+    private static final int MAX_ARRAY = 4096;
+    private static final int BITSET_WORDS = 65536 / 64;
+
+    /**
+     * Largest id that can be stored. Note ids are SQLite rowids handed out in sequence, so they
+     * stay far below it.
+     */
+    static final long MAX_ID = 0xFFFFFFFFL;
+
+    private char[] mKeys;
+    // Per container: a char[] of sorted values, which may have spare capacity, or a long[] bitset
+    private Object[] mContainers;
+    private int[] mCounts;
+    private int mSize;
+
+    NoteBitmap() {
+        this(4);
+    }
+
+    private NoteBitmap(int capacity) {
+        capacity = Math.max(capacity, 1);
+        mKeys = new char[capacity];
+        mContainers = new Object[capacity];
+        mCounts = new int[capacity];
+    }
+
+    /**
+     * Adds {@code id}, returning false if it was already present.
+     */
+    boolean add(long id) {
+        if (id < 0 || id > MAX_ID) {
+            throw new IllegalArgumentException("Id out of range: " + id);
+        }
+        char key = (char) (id >>> 16);
+        char value = (char) id;
+        int i = indexOf(key);
+        if (i < 0) {
+            i = -(i + 1);
+            insertContainer(i, key, new char[4], 0);
+        }
+
+        int count = mCounts[i];
+        if (mContainers[i] instanceof long[]) {
+            long[] bits = (long[]) mContainers[i];
+            long mask = 1L << value;
+            if ((bits[value >>> 6] & mask) != 0) {
+                return false;
+            }
+            bits[value >>> 6] |= mask;
+            mCounts[i] = count + 1;
+            return true;
+        }
+
+        char[] values = (char[]) mContainers[i];
+        int j = Arrays.binarySearch(values, 0, count, value);
+        if (j >= 0) {
+            return false;
+        }
+        if (count == MAX_ARRAY) {
+            long[] bits = toBitset(values, count);
+            bits[value >>> 6] |= 1L << value;
+            mContainers[i] = bits;
+        } else {
+            j = -(j + 1);
+            if (count == values.length) {
+                values = Arrays.copyOf(values, Math.min(MAX_ARRAY, count * 2));
+                mContainers[i] = values;
+            }
+            System.arraycopy(values, j, values, j + 1, count - j);
+            values[j] = value;
+        }
+        mCounts[i] = count + 1;
+        return true;
+    }
+
+    /**
+     * Removes {@code id}, returning false if it was not present.
+     */
+    boolean remove(long id) {
+        if (id < 0 || id > MAX_ID) {
+            return false;
+        }
+        int i = indexOf((char) (id >>> 16));
+        if (i < 0) {
+            return false;
+        }
+        char value = (char) id;
+        int count = mCounts[i];
+        if (mContainers[i] instanceof long[]) {
+            long[] bits = (long[]) mContainers[i];
+            long mask = 1L << value;
+            if ((bits[value >>> 6] & mask) == 0) {
+                return false;
+            }
+            bits[value >>> 6] &= ~mask;
+            count--;
+            if (count <= MAX_ARRAY) {
+                mContainers[i] = toArray(bits, count);
+            }
+        } else {
+            char[] values = (char[]) mContainers[i];
+            int j = Arrays.binarySearch(values, 0, count, value);
+            if (j < 0) {
+                return false;
+            }
+            System.arraycopy(values, j + 1, values, j, count - j - 1);
+            count--;
+        }
+
+        if (count == 0) {
+            mSize--;
+            System.arraycopy(mKeys, i + 1, mKeys, i, mSize - i);
+            System.arraycopy(mContainers, i + 1, mContainers, i, mSize - i);
+            System.arraycopy(mCounts, i + 1, mCounts, i, mSize - i);
+            mContainers[mSize] = null;
+        } else {
+            mCounts[i] = count;
+        }
+        return true;
+    }
+
+    boolean contains(long id) {
+        if (id < 0 || id > MAX_ID) {
+            return false;
+        }
+        int i = indexOf((char) (id >>> 16));
+        return i >= 0 && containerContains(mContainers[i], mCounts[i], (char) id);
+    }
+
+    int getCardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < mSize; i++) {
+            cardinality += mCounts[i];
+        }
+        return cardinality;
+    }
+
+    boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * Returns the ids in ascending order.
+     */
+    long[] toArray() {
+        long[] ids = new long[getCardinality()];
+        int n = 0;
+        for (int i = 0; i < mSize; i++) {
+            long high = (long) mKeys[i] << 16;
+            Object container = mContainers[i];
+            if (container instanceof long[]) {
+                long[] bits = (long[]) container;
+                for (int w = 0; w < BITSET_WORDS; w++) {
+                    long word = bits[w];
+                    while (word != 0) {
+                        ids[n++] = high | (w << 6) | Long.numberOfTrailingZeros(word);
+                        word &= word - 1;
+                    }
+                }
+            } else {
+                char[] values = (char[]) container;
+                for (int j = 0; j < mCounts[i]; j++) {
+                    ids[n++] = high | values[j];
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Returns a bitmap holding the same ids that shares no storage with this one.
+     */
+    NoteBitmap copy() {
+        NoteBitmap result = new NoteBitmap(mSize);
+        for (int i = 0; i < mSize; i++) {
+            result.append(mKeys[i], copyContainer(mContainers[i], mCounts[i]), mCounts[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the ids present in both {@code a} and {@code b}.
+     */
+    static NoteBitmap and(NoteBitmap a, NoteBitmap b) {
+        NoteBitmap result = new NoteBitmap(Math.min(a.mSize, b.mSize));
+        for (int i = 0, j = 0; i < a.mSize && j < b.mSize; ) {
+            if (a.mKeys[i] < b.mKeys[j]) {
+                i++;
+            } else if (a.mKeys[i] > b.mKeys[j]) {
+                j++;
+            } else {
+                result.andContainers(a.mKeys[i], a.mContainers[i], a.mCounts[i], b.mContainers[j], b.mCounts[j]);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of ids present in both {@code a} and {@code b}, without building their
+     * intersection.
+     */
+    static int andCardinality(NoteBitmap a, NoteBitmap b) {
+        int cardinality = 0;
+        for (int i = 0, j = 0; i < a.mSize && j < b.mSize; ) {
+            if (a.mKeys[i] < b.mKeys[j]) {
+                i++;
+            } else if (a.mKeys[i] > b.mKeys[j]) {
+                j++;
+            } else {
+                Object ca = a.mContainers[i];
+                Object cb = b.mContainers[j];
+                if (ca instanceof long[] && cb instanceof long[]) {
+                    long[] bitsA = (long[]) ca;
+                    long[] bitsB = (long[]) cb;
+                    for (int w = 0; w < BITSET_WORDS; w++) {
+                        cardinality += Long.bitCount(bitsA[w] & bitsB[w]);
+                    }
+                } else {
+                    // Probe the other container with each value of an array container.
+                    boolean arrayA = ca instanceof char[];
+                    char[] values = (char[]) (arrayA ? ca : cb);
+                    int count = arrayA ? a.mCounts[i] : b.mCounts[j];
+                    Object other = arrayA ? cb : ca;
+                    int otherCount = arrayA ? b.mCounts[j] : a.mCounts[i];
+                    for (int k = 0; k < count; k++) {
+                        if (containerContains(other, otherCount, values[k])) {
+                            cardinality++;
+                        }
+                    }
+                }
+                i++;
+                j++;
+            }
+        }
+        return cardinality;
+    }
+
+    /**
+     * Returns the ids present in {@code a}, {@code b} or both.
+     */
+    static NoteBitmap or(NoteBitmap a, NoteBitmap b) {
+        NoteBitmap result = new NoteBitmap(a.mSize + b.mSize);
+        int i = 0;
+        int j = 0;
+        while (i < a.mSize || j < b.mSize) {
+            if (j == b.mSize || (i < a.mSize && a.mKeys[i] < b.mKeys[j])) {
+                result.append(a.mKeys[i], copyContainer(a.mContainers[i], a.mCounts[i]), a.mCounts[i]);
+                i++;
+            } else if (i == a.mSize || a.mKeys[i] > b.mKeys[j]) {
+                result.append(b.mKeys[j], copyContainer(b.mContainers[j], b.mCounts[j]), b.mCounts[j]);
+                j++;
+            } else {
+                result.orContainers(a.mKeys[i], a.mContainers[i], a.mCounts[i], b.mContainers[j], b.mCounts[j]);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    private void andContainers(char key, Object ca, int na, Object cb, int nb) {
+        if (ca instanceof long[] && cb instanceof long[]) {
+            long[] bitsA = (long[]) ca;
+            long[] bitsB = (long[]) cb;
+            long[] bits = new long[BITSET_WORDS];
+            int count = 0;
+            for (int w = 0; w < BITSET_WORDS; w++) {
+                bits[w] = bitsA[w] & bitsB[w];
+                count += Long.bitCount(bits[w]);
+            }
+            if (count > 0) {
+                append(key, count <= MAX_ARRAY ? toArray(bits, count) : bits, count);
+            }
+            return;
+        }
+
+        // The result is no larger than the array side, so it stays an array.
+        boolean arrayA = ca instanceof char[];
+        char[] values = (char[]) (arrayA ? ca : cb);
+        int count = arrayA ? na : nb;
+        Object other = arrayA ? cb : ca;
+        int otherCount = arrayA ? nb : na;
+        char[] kept = new char[count];
+        int n = 0;
+        for (int k = 0; k < count; k++) {
+            if (containerContains(other, otherCount, values[k])) {
+                kept[n++] = values[k];
+            }
+        }
+        if (n > 0) {
+            append(key, kept, n);
+        }
+    }
+
+    private void orContainers(char key, Object ca, int na, Object cb, int nb) {
+        if (ca instanceof char[] && cb instanceof char[] && na + nb <= MAX_ARRAY) {
+            char[] a = (char[]) ca;
+            char[] b = (char[]) cb;
+            char[] merged = new char[na + nb];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < na && j < nb) {
+                if (a[i] < b[j]) {
+                    merged[n++] = a[i++];
+                } else if (a[i] > b[j]) {
+                    merged[n++] = b[j++];
+                } else {
+                    merged[n++] = a[i++];
+                    j++;
+                }
+            }
+            while (i < na) {
+                merged[n++] = a[i++];
+            }
+            while (j < nb) {
+                merged[n++] = b[j++];
+            }
+            append(key, merged, n);
+            return;
+        }
+
+        long[] bits = new long[BITSET_WORDS];
+        orInto(bits, ca, na);
+        orInto(bits, cb, nb);
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        append(key, count <= MAX_ARRAY ? toArray(bits, count) : bits, count);
+    }
+
+    private static void orInto(long[] bits, Object container, int count) {
+        if (container instanceof long[]) {
+            long[] other = (long[]) container;
+            for (int w = 0; w < BITSET_WORDS; w++) {
+                bits[w] |= other[w];
+            }
+        } else {
+            char[] values = (char[]) container;
+            for (int k = 0; k < count; k++) {
+                bits[values[k] >>> 6] |= 1L << values[k];
+            }
+        }
+    }
+
+    private static boolean containerContains(Object container, int count, char value) {
+        if (container instanceof long[]) {
+            return (((long[]) container)[value >>> 6] & (1L << value)) != 0;
+        }
+        return Arrays.binarySearch((char[]) container, 0, count, value) >= 0;
+    }
+
+    private static Object copyContainer(Object container, int count) {
+        if (container instanceof long[]) {
+            return ((long[]) container).clone();
+        }
+        return Arrays.copyOf((char[]) container, count);
+    }
+
+    private static long[] toBitset(char[] values, int count) {
+        long[] bits = new long[BITSET_WORDS];
+        for (int k = 0; k < count; k++) {
+            bits[values[k] >>> 6] |= 1L << values[k];
+        }
+        return bits;
+    }
+
+    private static char[] toArray(long[] bits, int count) {
+        char[] values = new char[count];
+        int n = 0;
+        for (int w = 0; w < BITSET_WORDS; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                values[n++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return values;
+    }
+
+    private int indexOf(char key) {
+        return Arrays.binarySearch(mKeys, 0, mSize, key);
+    }
+
+    /**
+     * Adds a container whose key sorts after every existing one.
+     */
+    private void append(char key, Object container, int count) {
+        insertContainer(mSize, key, container, count);
+    }
+
+    private void insertContainer(int i, char key, Object container, int count) {
+        if (mSize == mKeys.length) {
+            int capacity = mSize * 2;
+            mKeys = Arrays.copyOf(mKeys, capacity);
+            mContainers = Arrays.copyOf(mContainers, capacity);
+            mCounts = Arrays.copyOf(mCounts, capacity);
+        }
+        System.arraycopy(mKeys, i, mKeys, i + 1, mSize - i);
+        System.arraycopy(mContainers, i, mContainers, i + 1, mSize - i);
+        System.arraycopy(mCounts, i, mCounts, i + 1, mSize - i);
+        mKeys[i] = key;
+        mContainers[i] = container;
+        mCounts[i] = count;
+        mSize++;
+    }
+}
@@ -1,43 +1,110 @@
 package com.example.android.notepad;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
+import android.util.LongSparseArray;
 import android.view.ViewGroup;
 import android.widget.ImageButton;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 public class NoteCategoryAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
 
     private static final int TYPE_CATEGORY = 0;
     private static final int TYPE_NOTE = 1;
 
+    // Diffs of successive models are computed here, one at a time
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
     private final Context mContext;
-    private final List<Object> mItems;
     private final OnNoteListener mOnNoteListener;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // Upper bound on the formatted timestamps kept; far more than a screen of rows shows
+    private static final int MAX_FORMATTED_DATES = 1024;
+
+    // Used on the UI thread only. Formatted timestamps are kept by modification time, so a row
+    // scrolled back into view, or kept by a new model, is not formatted again.
+    private final SimpleDateFormat mDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.getDefault());
+    private final Date mDate = new Date();
+    private final LongSparseArray<String> mFormattedDates = new LongSparseArray<>();
+
+    private NoteListModel mModel = NoteListModel.EMPTY;
+    // Incremented by every submitModel call, so that a diff finishing late is dropped
+    private int mMaxGeneration;
 
     public interface OnNoteListener {
         void onNoteClick(NotesListFragment.NoteHolder note);
         void onDeleteClick(NotesListFragment.NoteHolder note);
     }
 
-    public NoteCategoryAdapter(Context context, List<Object> items, OnNoteListener onNoteListener) {
+    public NoteCategoryAdapter(Context context, OnNoteListener onNoteListener) {
         mContext = context;
-        mItems = items;
         mOnNoteListener = onNoteListener;
+        setHasStableIds(true);
+    }
+
+    /**
+     * Replaces the displayed rows. The diff against the current model is computed on a
+     * background thread and only the rows that changed are rebound.
+     */
+    void submitModel(NoteListModel model) {
+        final int generation = ++mMaxGeneration;
+        final NoteListModel oldModel = mModel;
+        if (oldModel == model) {
+            return;
+        }
+        if (oldModel.getRowCount() == 0 || model.getRowCount() == 0) {
+            // Nothing to diff against; swap the model and report the whole range.
+            mModel = model;
+            if (oldModel.getRowCount() > 0) {
+                notifyItemRangeRemoved(0, oldModel.getRowCount());
+            }
+            if (model.getRowCount() > 0) {
+                notifyItemRangeInserted(0, model.getRowCount());
+            }
+            return;
+        }
+
+        DIFF_EXECUTOR.execute(() -> {
+            DiffUtil.DiffResult result = DiffUtil.calculateDiff(new ModelDiffCallback(oldModel, model));
+            mMainHandler.post(() -> {
+                if (generation == mMaxGeneration) {
+                    mModel = model;
+                    result.dispatchUpdatesTo(NoteCategoryAdapter.this);
+                }
+            });
+        });
+    }
+
+    NoteListModel getModel() {
+        return mModel;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        if (mModel.isHeader(position)) {
+            // Category ids are positive, so negated they never collide with note ids.
+            return -mModel.getHeaderId(position);
+        }
+        return mModel.getId(mModel.getNoteIndex(position));
     }
 
     @Override
     public int getItemViewType(int position) {
-        if (mItems.get(position) instanceof String) {
+        if (mModel.isHeader(position)) {
             return TYPE_CATEGORY;
         } else {
             return TYPE_NOTE;
@@ -60,16 +127,77 @@ public class NoteCategoryAdapter extends RecyclerView.Adapter<RecyclerView.ViewH
     public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
         if (holder.getItemViewType() == TYPE_CATEGORY) {
             CategoryViewHolder categoryViewHolder = (CategoryViewHolder) holder;
-            categoryViewHolder.bind((String) mItems.get(position));
+            categoryViewHolder.bind(mModel.getHeader(position));
         } else {
             NoteViewHolder noteViewHolder = (NoteViewHolder) holder;
-            noteViewHolder.bind((NotesListFragment.NoteHolder) mItems.get(position));
+            noteViewHolder.bind(mModel, mModel.getNoteIndex(position));
         }
     }
 
     @Override
     public int getItemCount() {
-        return mItems.size();
+        return mModel.getRowCount();
+    }
+
+    /**
+     * Headers and notes match by id; their contents are the fields their row displays, which for
+     * a header is the category name.
+     */
+    private static class ModelDiffCallback extends DiffUtil.Callback {
+        private final NoteListModel mOld;
+        private final NoteListModel mNew;
+
+        ModelDiffCallback(NoteListModel oldModel, NoteListModel newModel) {
+            mOld = oldModel;
+            mNew = newModel;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOld.getRowCount();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNew.getRowCount();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            boolean oldHeader = mOld.isHeader(oldPosition);
+            if (oldHeader != mNew.isHeader(newPosition)) {
+                return false;
+            }
+            if (oldHeader) {
+                return mOld.getHeaderId(oldPosition) == mNew.getHeaderId(newPosition);
+            }
+            return mOld.getId(mOld.getNoteIndex(oldPosition)) == mNew.getId(mNew.getNoteIndex(newPosition));
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            if (mOld.isHeader(oldPosition)) {
+                return mOld.getHeader(oldPosition).equals(mNew.getHeader(newPosition));
+            }
+            int oldNote = mOld.getNoteIndex(oldPosition);
+            int newNote = mNew.getNoteIndex(newPosition);
+            String oldTitle = mOld.getTitle(oldNote);
+            return mOld.getModified(oldNote) == mNew.getModified(newNote)
+                    && (oldTitle == null ? mNew.getTitle(newNote) == null : oldTitle.equals(mNew.getTitle(newNote)));
+        }
+    }
+
+    private String formatDate(long modified) {
+        String formatted = mFormattedDates.get(modified);
+        if (formatted == null) {
+            if (mFormattedDates.size() >= MAX_FORMATTED_DATES) {
+                mFormattedDates.clear();
+            }
+            mDate.setTime(modified);
+            formatted = mDateFormat.format(mDate);
+            mFormattedDates.put(modified, formatted);
+        }
+        return formatted;
     }
 
     class CategoryViewHolder extends RecyclerView.ViewHolder {
@@ -99,25 +227,23 @@ public class NoteCategoryAdapter extends RecyclerView.Adapter<RecyclerView.ViewH
             itemView.setOnClickListener(v -> {
                 int pos = getAdapterPosition();
                 if (pos != RecyclerView.NO_POSITION) {
-                    mOnNoteListener.onNoteClick((NotesListFragment.NoteHolder) mItems.get(pos));
+                    mOnNoteListener.onNoteClick(mModel.getNote(pos));
                 }
             });
 
             mDeleteButton.setOnClickListener(v -> {
                 int pos = getAdapterPosition();
                 if (pos != RecyclerView.NO_POSITION) {
-                    mOnNoteListener.onDeleteClick((NotesListFragment.NoteHolder) mItems.get(pos));
+                    mOnNoteListener.onDeleteClick(mModel.getNote(pos));
                 }
             });
         }
 
-        void bind(NotesListFragment.NoteHolder note) {
-            mNoteTitle.setText(note.title);
-            
+        void bind(NoteListModel model, int note) {
+            mNoteTitle.setText(model.getTitle(note));
+
             // 格式化并显示时间戳
-            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.getDefault());
-            String formattedDate = sdf.format(new Date(note.modificationDate));
-            mNoteTimestamp.setText(formattedDate);
+            mNoteTimestamp.setText(formatDate(model.getModified(note)));
         }
     }
-}
\ No newline at end of file
+}
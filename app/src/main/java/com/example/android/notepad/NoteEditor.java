@@ -20,6 +20,7 @@ import android.app.AlertDialog;
 import android.content.ClipData;
 import android.content.ClipboardManager;
 import android.content.ComponentName;
+import android.content.ContentProviderResult;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
@@ -31,7 +32,12 @@ import android.graphics.Paint;
 import android.graphics.Rect;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.Editable;
+import android.text.InputType;
+import android.text.Layout;
+import android.text.TextUtils;
 import android.text.TextWatcher;
 import android.util.AttributeSet;
 import android.util.Log;
@@ -40,9 +46,9 @@ import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.AdapterView;
-import android.widget.ArrayAdapter;
 import android.widget.AutoCompleteTextView;
 import android.widget.EditText;
+import android.widget.SimpleCursorAdapter;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -52,10 +58,8 @@ import androidx.loader.app.LoaderManager;
 import androidx.loader.content.CursorLoader;
 import androidx.loader.content.Loader;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 public class NoteEditor extends AppCompatActivity implements LoaderManager.LoaderCallbacks<Cursor> {
     // For logging and debugging purposes
@@ -63,31 +67,69 @@ public class NoteEditor extends AppCompatActivity implements LoaderManager.Loade
     
     private Toolbar mToolbar;
 
+    /**
+     * Characters of the body read per query. The editor's own query only returns the first
+     * chunk; a larger note is read and appended chunk by chunk after the editor is shown, so
+     * no single cursor window or layout pass has to hold the whole body.
+     */
+    private static final int BODY_CHUNK_CHARS = 64 * 1024;
+
     private static final String[] PROJECTION =
             new String[]{
                     NotePad.Notes._ID, // 0
                     NotePad.Notes.COLUMN_NAME_TITLE, // 1
-                    NotePad.Notes.COLUMN_NAME_NOTE, // 2
-                    NotePad.Notes.COLUMN_NAME_CATEGORY // 3
+                    bodyChunk(0), // 2
+                    NotePad.Notes.COLUMN_NAME_CATEGORY, // 3
+                    NotePad.Notes.COLUMN_NAME_NOTE_LENGTH // 4
             };
 
+    // Reads the remaining chunks of large notes
+    private static final Executor BODY_LOADER = Executors.newSingleThreadExecutor();
+
     private static final String ORIGINAL_CONTENT = "origContent";
 
     private static final int STATE_EDIT = 0;
     private static final int STATE_INSERT = 1;
     private static final int LOADER_ID = 2;
 
+    // Quiet period after the last keystroke before the changes are saved in the background
+    private static final long AUTOSAVE_DELAY_MS = 2000;
+
     private int mState;
     private Uri mUri;
     private Cursor mCursor;
     private EditText mText;
     private EditText mTitleText;
     private AutoCompleteTextView mCategoryAutoComplete;
+    private SimpleCursorAdapter mCategoryAdapter;
     private String mOriginalContent;
     private boolean mPerformPasteOnLoad = false;
 
+    // The values last loaded from or written to the provider, which the fields are compared to
+    private String mSavedTitle;
+    private String mSavedText;
+    private String mSavedCategory;
+    // Set by the text watchers when the user edits a field, cleared once the field is saved
+    private boolean mTitleDirty;
+    private boolean mTextDirty;
+    private boolean mCategoryDirty;
+    // True while the fields are being filled from the provider, so that doesn't count as an edit
+    private boolean mPopulating;
+    private boolean mLoaded;
+
+    // Length of the saved body in characters as SQLite counts them, i.e. code points
+    private int mSavedLength;
+    // True while the rest of a large body is being appended; the body cannot be edited meanwhile
+    private boolean mBodyLoading;
+    // Incremented for every body load, so the chunks of a superseded load are dropped
+    private volatile int mBodyGeneration;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mAutosave = this::saveNote;
+
     public static class LinedEditText extends EditText {
         private final Rect mRect;
+        private final Rect mClip = new Rect();
         private final Paint mPaint;
 
         public LinedEditText(Context context, AttributeSet attrs) {
@@ -98,14 +140,23 @@ public class NoteEditor extends AppCompatActivity implements LoaderManager.Loade
             mPaint.setColor(0x800000FF);
         }
 
+        /**
+         * Rules only the lines that intersect the area being drawn, so the cost of a frame does
+         * not grow with the length of the note.
+         */
         @Override
         protected void onDraw(Canvas canvas) {
-            int count = getLineCount();
+            Layout layout = getLayout();
             Rect r = mRect;
             Paint paint = mPaint;
-            for (int i = 0; i < count; i++) {
-                int baseline = getLineBounds(i, r);
-                canvas.drawLine(r.left, baseline + 1, r.right, baseline + 1, paint);
+            if (layout != null && canvas.getClipBounds(mClip)) {
+                int top = getExtendedPaddingTop();
+                int first = layout.getLineForVertical(Math.max(0, mClip.top - top));
+                int last = layout.getLineForVertical(Math.max(0, mClip.bottom - top));
+                for (int i = first; i <= last; i++) {
+                    int baseline = getLineBounds(i, r);
+                    canvas.drawLine(r.left, baseline + 1, r.right, baseline + 1, paint);
+                }
             }
             super.onDraw(canvas);
         }
@@ -127,14 +178,11 @@ public class NoteEditor extends AppCompatActivity implements LoaderManager.Loade
             if (insertUri == null) {
                 insertUri = NotePad.Notes.CONTENT_URI;
             }
-            mUri = getContentResolver().insert(insertUri, null);
-
-            if (mUri == null) {
-                Log.e(TAG, "Failed to insert new note into " + insertUri);
-                finish();
-                return;
-            }
-            setResult(RESULT_OK, (new Intent()).setAction(mUri.toString()));
+            // The note is created off the UI thread; its loader starts once the row exists.
+            final Uri target = insertUri;
+            NotePadRepository repository = NotePadRepository.get(this);
+            repository.insert(insertUri, null, result -> onNoteInserted(target, result));
+            repository.flush();
         } else {
             Log.e(TAG, "Unknown action, exiting");
             finish();
@@ -160,20 +208,109 @@ public class NoteEditor extends AppCompatActivity implements LoaderManager.Loade
         // 设置分类自动完成文本框
         setupCategoryAutocomplete();
 
+        // The fields stay disabled until the note has been loaded, which for a new note is only
+        // after its row was inserted, so nothing typed before then can be overwritten by the
+        // first load or dropped by an autosave that has no row to write to.
+        setFieldsEnabled(false);
+
+        mTitleText.addTextChangedListener(new EditWatcher() {
+            @Override
+            public void afterTextChanged(Editable s) {
+                if (!mPopulating) {
+                    mTitleDirty = true;
+                    scheduleAutosave();
+                }
+            }
+        });
+        mText.addTextChangedListener(new EditWatcher() {
+            @Override
+            public void afterTextChanged(Editable s) {
+                if (!mPopulating) {
+                    mTextDirty = true;
+                    scheduleAutosave();
+                }
+            }
+        });
+        mCategoryAutoComplete.addTextChangedListener(new EditWatcher() {
+            @Override
+            public void afterTextChanged(Editable s) {
+                if (!mPopulating) {
+                    mCategoryDirty = true;
+                    scheduleAutosave();
+                }
+            }
+        });
+
         // 移除了对ACTION_PASTE的特殊处理
 
         if (savedInstanceState != null) {
             mOriginalContent = savedInstanceState.getString(ORIGINAL_CONTENT);
         }
 
+        if (mUri != null) {
+            LoaderManager.getInstance(this).initLoader(LOADER_ID, null, this);
+        }
+    }
+
+    private void onNoteInserted(Uri insertUri, @Nullable ContentProviderResult result) {
+        if (isFinishing() || isDestroyed()) {
+            return;
+        }
+        if (result == null || result.uri == null) {
+            Log.e(TAG, "Failed to insert new note into " + insertUri);
+            finish();
+            return;
+        }
+        mUri = result.uri;
+        setResult(RESULT_OK, (new Intent()).setAction(mUri.toString()));
         LoaderManager.getInstance(this).initLoader(LOADER_ID, null, this);
     }
 
+    /**
+     * A TextWatcher that only cares about the text after the change.
+     */
+    private abstract static class EditWatcher implements TextWatcher {
+        @Override
+        public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+        }
+
+        @Override
+        public void onTextChanged(CharSequence s, int start, int before, int count) {
+        }
+    }
+
+    /**
+     * Enables or disables editing of all fields. The body stays disabled while it is loading.
+     */
+    private void setFieldsEnabled(boolean enabled) {
+        mTitleText.setEnabled(enabled);
+        mCategoryAutoComplete.setEnabled(enabled);
+        mText.setEnabled(enabled && !mBodyLoading);
+    }
+
+    private void scheduleAutosave() {
+        mHandler.removeCallbacks(mAutosave);
+        mHandler.postDelayed(mAutosave, AUTOSAVE_DELAY_MS);
+    }
+
+    /**
+     * Suggests existing categories from the provider's in-memory suggestion index. The adapter's
+     * filter runs the query on its own worker thread as the user types.
+     */
     private void setupCategoryAutocomplete() {
-        ArrayAdapter<String> adapter = new ArrayAdapter<>(this, 
-                android.R.layout.simple_dropdown_item_1line, 
-                getExistingCategories());
-        mCategoryAutoComplete.setAdapter(adapter);
+        mCategoryAdapter = new SimpleCursorAdapter(this,
+                android.R.layout.simple_dropdown_item_1line, null,
+                new String[]{NotePad.Suggestions.COLUMN_NAME_SUGGESTION}, new int[]{android.R.id.text1}, 0);
+        mCategoryAdapter.setFilterQueryProvider(constraint -> getContentResolver().query(
+                NotePad.Suggestions.CONTENT_URI.buildUpon()
+                        .appendQueryParameter(NotePad.Suggestions.QUERY_PARAMETER_KIND, NotePad.Suggestions.KIND_CATEGORY)
+                        .appendQueryParameter(NotePad.Suggestions.QUERY_PARAMETER_PREFIX,
+                                constraint != null ? constraint.toString().trim() : "")
+                        .build(),
+                null, null, null, null));
+        mCategoryAdapter.setCursorToStringConverter(cursor -> cursor.getString(
+                cursor.getColumnIndexOrThrow(NotePad.Suggestions.COLUMN_NAME_SUGGESTION)));
+        mCategoryAutoComplete.setAdapter(mCategoryAdapter);
         mCategoryAutoComplete.setThreshold(0); // 输入0个字符就开始显示建议
         
         // 添加焦点监听器，确保点击时显示下拉列表
@@ -181,7 +318,7 @@ public class NoteEditor extends AppCompatActivity implements LoaderManager.Loade
             @Override
             public void onFocusChange(View v, boolean hasFocus) {
                 if (hasFocus) {
-                    mCategoryAutoComplete.showDropDown();
+                    showCategorySuggestions();
                 }
             }
         });
@@ -190,7 +327,7 @@ public class NoteEditor extends AppCompatActivity implements LoaderManager.Loade
         mCategoryAutoComplete.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                mCategoryAutoComplete.showDropDown();
+                showCategorySuggestions();
             }
         });
         
@@ -218,26 +355,25 @@ public class NoteEditor extends AppCompatActivity implements LoaderManager.Loade
         });
     }
 
-    private List<String> getExistingCategories() {
-        Set<String> categories = new HashSet<>();
-        Cursor cursor = getContentResolver().query(NotePad.Notes.CONTENT_URI, 
-                new String[]{NotePad.Notes.COLUMN_NAME_CATEGORY}, null, null, null);
-        if (cursor != null) {
-            while (cursor.moveToNext()) {
-                String category = cursor.getString(0);
-                if (category != null && !category.isEmpty()) {
-                    categories.add(category);
-                }
+    /**
+     * Shows the categories matching the current text, refreshed first since notes may have
+     * changed since the last query.
+     */
+    private void showCategorySuggestions() {
+        mCategoryAdapter.getFilter().filter(mCategoryAutoComplete.getText(), count -> {
+            if (mCategoryAutoComplete.hasFocus() && !isFinishing()) {
+                mCategoryAutoComplete.showDropDown();
             }
-            cursor.close();
-        }
-        return new ArrayList<>(categories);
+        });
     }
 
     @Override
     protected void onSaveInstanceState(@NonNull Bundle outState) {
         super.onSaveInstanceState(outState);
-        outState.putString(ORIGINAL_CONTENT, mOriginalContent);
+        // The original body of a large note would not fit in the saved state.
+        if (mOriginalContent != null && mOriginalContent.length() <= BODY_CHUNK_CHARS) {
+            outState.putString(ORIGINAL_CONTENT, mOriginalContent);
+        }
     }
 
     @Override
@@ -245,15 +381,20 @@ public class NoteEditor extends AppCompatActivity implements LoaderManager.Loade
         super.onPause();
 
         if (mCursor != null) {
-            String text = mText.getText().toString();
-            String title = mTitleText.getText().toString();
-            String category = mCategoryAutoComplete.getText().toString();
-
             // 移除了内容为空时删除笔记的逻辑，无论内容是否为空都保存笔记
-            updateNote(text, title, category);
+            saveNote();
+        } else {
+            mHandler.removeCallbacks(mAutosave);
         }
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // Closes the last suggestions cursor
+        mCategoryAdapter.changeCursor(null);
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         MenuInflater inflater = getMenuInflater();
@@ -277,10 +418,8 @@ public class NoteEditor extends AppCompatActivity implements LoaderManager.Loade
     @Override
     public boolean onPrepareOptionsMenu(Menu menu) {
         if (mCursor != null && mCursor.moveToFirst()) {
-            int colNoteIndex = mCursor.getColumnIndex(NotePad.Notes.COLUMN_NAME_NOTE);
-            String savedNote = mCursor.getString(colNoteIndex);
-            String currentNote = mText.getText().toString();
-            menu.findItem(R.id.menu_revert).setVisible(!savedNote.equals(currentNote));
+            menu.findItem(R.id.menu_revert).setVisible(mOriginalContent != null
+                    && (mTextDirty || !TextUtils.equals(mSavedText, mOriginalContent)));
             
             // 在编辑状态下确保保存按钮可见
             menu.findItem(R.id.menu_save).setVisible(true);
@@ -299,10 +438,7 @@ public class NoteEditor extends AppCompatActivity implements LoaderManager.Loade
     public boolean onOptionsItemSelected(MenuItem item) {
         int id = item.getItemId();
         if (id == R.id.menu_save) {
-            String text = mText.getText().toString();
-            String title = mTitleText.getText().toString();
-            String category = mCategoryAutoComplete.getText().toString();
-            updateNote(text, title, category);
+            saveNote();
             finish();
         } else if (id == R.id.menu_delete) {
             deleteNote();
@@ -331,8 +467,7 @@ public class NoteEditor extends AppCompatActivity implements LoaderManager.Loade
                     .setTitle("保存笔记")
                     .setMessage("是否保存当前笔记?")
                     .setPositiveButton("保存", (dialog, which) -> {
-                        String category = mCategoryAutoComplete.getText().toString();
-                        updateNote(text, title, category);
+                        saveNote();
                         finish();
                     })
                     .setNegativeButton("不保存", (dialog, which) -> {
@@ -349,47 +484,98 @@ public class NoteEditor extends AppCompatActivity implements LoaderManager.Loade
         handleBackPressed();
     }
 
-    private void updateNote(String text, String title, String category) {
-        ContentValues values = new ContentValues();
-        values.put(NotePad.Notes.COLUMN_NAME_MODIFICATION_DATE, System.currentTimeMillis());
+    /**
+     * Writes the fields the user changed since the last save, and nothing if none did. Only the
+     * changed columns are sent, so editing the title of a large note does not rewrite its body.
+     */
+    private void saveNote() {
+        mHandler.removeCallbacks(mAutosave);
+        if (!mLoaded) {
+            return;
+        }
 
-        if (mState == STATE_INSERT) {
-            if (title == null || title.trim().isEmpty()) {
-                int length = text.length();
-                title = text.substring(0, Math.min(30, length));
-                if (length > 30) {
-                    int lastSpace = title.lastIndexOf(' ');
-                    if (lastSpace > 0) {
-                        title = title.substring(0, lastSpace);
-                    }
-                }
+        ContentValues values = new ContentValues();
+        String text = null;
+        if (mTextDirty && !mBodyLoading) {
+            text = mText.getText().toString();
+            if (!text.equals(mSavedText)) {
+                values.put(NotePad.Notes.COLUMN_NAME_NOTE, text);
             }
         }
-        if (title != null) {
-            values.put(NotePad.Notes.COLUMN_NAME_TITLE, title);
+
+        if (mTitleDirty || (mState == STATE_INSERT && text != null)) {
+            String title = mTitleText.getText().toString();
+            if (mState == STATE_INSERT && title.trim().isEmpty()) {
+                title = deriveTitle(text != null ? text : mSavedText);
+            }
+            if (!title.equals(mSavedTitle)) {
+                values.put(NotePad.Notes.COLUMN_NAME_TITLE, title);
+            }
         }
 
-        if (category != null) {
-            if (!category.trim().isEmpty()) {
-                values.put(NotePad.Notes.COLUMN_NAME_CATEGORY, category.trim());
-            } else {
-                values.put(NotePad.Notes.COLUMN_NAME_CATEGORY, "Uncategorized"); // Default category
+        if (mCategoryDirty) {
+            String category = mCategoryAutoComplete.getText().toString().trim();
+            if (category.isEmpty()) {
+                category = NotePad.Notes.DEFAULT_CATEGORY;
             }
+            if (!category.equals(mSavedCategory)) {
+                values.put(NotePad.Notes.COLUMN_NAME_CATEGORY, category);
+            }
+        }
+
+        mTitleDirty = false;
+        if (!mBodyLoading) {
+            mTextDirty = false;
         }
+        mCategoryDirty = false;
+        if (values.size() == 0) {
+            return;
+        }
+
+        values.put(NotePad.Notes.COLUMN_NAME_MODIFICATION_DATE, System.currentTimeMillis());
+        NotePadRepository.get(this).update(mUri, values, null);
 
-        values.put(NotePad.Notes.COLUMN_NAME_NOTE, text);
+        if (values.containsKey(NotePad.Notes.COLUMN_NAME_NOTE)) {
+            mSavedText = text;
+            mSavedLength = text.codePointCount(0, text.length());
+        }
+        if (values.containsKey(NotePad.Notes.COLUMN_NAME_TITLE)) {
+            mSavedTitle = values.getAsString(NotePad.Notes.COLUMN_NAME_TITLE);
+        }
+        if (values.containsKey(NotePad.Notes.COLUMN_NAME_CATEGORY)) {
+            mSavedCategory = values.getAsString(NotePad.Notes.COLUMN_NAME_CATEGORY);
+        }
+    }
 
-        getContentResolver().update(mUri, values, null, null);
+    /**
+     * Makes a title for a new note from the start of its text, cut at a word boundary.
+     */
+    private static String deriveTitle(String text) {
+        if (text == null) {
+            return "";
+        }
+        int length = text.length();
+        String title = text.substring(0, Math.min(30, length));
+        if (length > 30) {
+            int lastSpace = title.lastIndexOf(' ');
+            if (lastSpace > 0) {
+                title = title.substring(0, lastSpace);
+            }
+        }
+        return title;
     }
 
     private void cancelNote() {
         if (mCursor != null) {
-            if (mState == STATE_EDIT) {
+            if (mState == STATE_EDIT && mOriginalContent != null) {
                 mCursor.close();
                 mCursor = null;
                 ContentValues values = new ContentValues();
                 values.put(NotePad.Notes.COLUMN_NAME_NOTE, mOriginalContent);
-                getContentResolver().update(mUri, values, null, null);
+                NotePadRepository.get(this).update(mUri, values, null);
+                mSavedText = mOriginalContent;
+                mSavedLength = mOriginalContent.codePointCount(0, mOriginalContent.length());
+                mTextDirty = false;
             } else if (mState == STATE_INSERT) {
                 deleteNote();
             }
@@ -402,7 +588,7 @@ public class NoteEditor extends AppCompatActivity implements LoaderManager.Loade
         if (mCursor != null) {
             mCursor.close();
             mCursor = null;
-            getContentResolver().delete(mUri, null, null);
+            NotePadRepository.get(this).delete(mUri, null);
             mText.setText("");
         }
     }
@@ -418,10 +604,24 @@ public class NoteEditor extends AppCompatActivity implements LoaderManager.Loade
         mCursor = data;
 
         if (mCursor != null && mCursor.moveToFirst()) {
+            int colTitleIndex = mCursor.getColumnIndex(NotePad.Notes.COLUMN_NAME_TITLE);
+            int colNoteIndex = mCursor.getColumnIndex(NotePad.Notes.COLUMN_NAME_NOTE);
+            int colCategoryIndex = mCursor.getColumnIndex(NotePad.Notes.COLUMN_NAME_CATEGORY);
+            int colLengthIndex = mCursor.getColumnIndex(NotePad.Notes.COLUMN_NAME_NOTE_LENGTH);
+            String title = mCursor.getString(colTitleIndex);
+            String firstChunk = mCursor.getString(colNoteIndex);
+            int length = mCursor.getInt(colLengthIndex);
+            String category = mCursor.getString(colCategoryIndex);
+
+            // After the first load a field is only refreshed when the stored value was changed
+            // elsewhere and the user has not edited it since; reloads caused by our own saves
+            // leave the fields alone.
+            boolean first = !mLoaded;
+            mPopulating = true;
             if (mState == STATE_EDIT) {
-                int colTitleIndex = mCursor.getColumnIndex(NotePad.Notes.COLUMN_NAME_TITLE);
-                String title = mCursor.getString(colTitleIndex);
-                mTitleText.setText(title);
+                if (first || (!mTitleDirty && !TextUtils.equals(title, mSavedTitle))) {
+                    mTitleText.setText(title);
+                }
                 Resources res = getResources();
                 String text = String.format(res.getString(R.string.title_edit), title);
                 setTitle(text);
@@ -429,21 +629,20 @@ public class NoteEditor extends AppCompatActivity implements LoaderManager.Loade
                 setTitle(getText(R.string.title_create));
             }
 
-            int colNoteIndex = mCursor.getColumnIndex(NotePad.Notes.COLUMN_NAME_NOTE);
-            String note = mCursor.getString(colNoteIndex);
-            mText.setTextKeepState(note);
+            if (first || (!mTextDirty && !mBodyLoading && bodyChanged(firstChunk, length))) {
+                loadBody(firstChunk != null ? firstChunk : "", length);
+            }
 
-            int colCategoryIndex = mCursor.getColumnIndex(NotePad.Notes.COLUMN_NAME_CATEGORY);
-            String category = mCursor.getString(colCategoryIndex);
-            if (category != null) {
+            if (category != null && (first || (!mCategoryDirty && !category.equals(mSavedCategory)))) {
                 mCategoryAutoComplete.setText(category);
             }
+            mPopulating = false;
 
-            // 每次数据加载完成后刷新分类列表
-            setupCategoryAutocomplete();
-
-            if (mOriginalContent == null) {
-                mOriginalContent = note;
+            mSavedTitle = title;
+            mSavedCategory = category;
+            mLoaded = true;
+            if (first) {
+                setFieldsEnabled(true);
             }
         } else {
             setTitle(getText(R.string.error_title));
@@ -453,6 +652,102 @@ public class NoteEditor extends AppCompatActivity implements LoaderManager.Loade
         // 移除了与粘贴相关的代码
     }
 
+    /**
+     * Returns the projection column reading {@link #BODY_CHUNK_CHARS} characters of the body
+     * starting at character {@code start}, under the body's column name.
+     */
+    private static String bodyChunk(int start) {
+        return "substr(" + NotePad.Notes.COLUMN_NAME_NOTE + ", " + (start + 1) + ", " + BODY_CHUNK_CHARS + ") AS "
+                + NotePad.Notes.COLUMN_NAME_NOTE;
+    }
+
+    /**
+     * Returns true if the stored body, of which the first chunk and the length are given,
+     * differs from the body last loaded or saved.
+     */
+    private boolean bodyChanged(String firstChunk, int length) {
+        return mSavedText == null || length != mSavedLength
+                || (firstChunk != null && !mSavedText.startsWith(firstChunk));
+    }
+
+    /**
+     * Shows the body whose first chunk and length the editor's query returned. A body that fits
+     * in the first chunk is shown at once. A larger one is shown from its first chunk and the
+     * rest is read on a background thread and appended as it arrives, which lets the layout
+     * grow incrementally. Editing the body is disabled until the whole body is in place.
+     */
+    private void loadBody(String firstChunk, int length) {
+        final int generation = ++mBodyGeneration;
+        int firstLength = firstChunk.codePointCount(0, firstChunk.length());
+        mPopulating = true;
+        mText.setTextKeepState(firstChunk);
+        mPopulating = false;
+        if (firstLength >= length) {
+            finishBody(generation, firstChunk, length);
+            return;
+        }
+
+        mBodyLoading = true;
+        mText.setEnabled(false);
+        // Spell checking a document this size would stall every edit.
+        mText.setInputType(mText.getInputType() | InputType.TYPE_TEXT_FLAG_NO_SUGGESTIONS);
+
+        final ContentResolver resolver = getContentResolver();
+        final Uri uri = mUri;
+        BODY_LOADER.execute(() -> {
+            StringBuilder body = new StringBuilder(length).append(firstChunk);
+            int read = firstLength;
+            while (read < length && generation == mBodyGeneration) {
+                String chunk = readBodyChunk(resolver, uri, read);
+                if (chunk == null || chunk.isEmpty()) {
+                    break;
+                }
+                body.append(chunk);
+                read += chunk.codePointCount(0, chunk.length());
+                mHandler.post(() -> appendBody(generation, chunk));
+            }
+            String text = body.toString();
+            int total = read;
+            mHandler.post(() -> finishBody(generation, text, total));
+        });
+    }
+
+    private static String readBodyChunk(ContentResolver resolver, Uri uri, int start) {
+        Cursor c = resolver.query(uri, new String[]{bodyChunk(start)}, null, null, null);
+        if (c == null) {
+            return null;
+        }
+        try {
+            return c.moveToFirst() ? c.getString(0) : null;
+        } finally {
+            c.close();
+        }
+    }
+
+    private void appendBody(int generation, String chunk) {
+        if (generation != mBodyGeneration || isDestroyed()) {
+            return;
+        }
+        mPopulating = true;
+        mText.getText().append(chunk);
+        mPopulating = false;
+    }
+
+    private void finishBody(int generation, String text, int length) {
+        if (generation != mBodyGeneration || isDestroyed()) {
+            return;
+        }
+        mSavedText = text;
+        mSavedLength = length;
+        if (mBodyLoading) {
+            mBodyLoading = false;
+            mText.setEnabled(true);
+        }
+        if (mOriginalContent == null) {
+            mOriginalContent = text;
+        }
+    }
+
     @Override
     public void onLoaderReset(@NonNull Loader<Cursor> loader) {
         if (mCursor != null) {
@@ -0,0 +1,208 @@
+package com.example.android.notepad;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+
+import androidx.core.content.ContentResolverCompat;
+import androidx.core.os.CancellationSignal;
+import androidx.core.os.OperationCanceledException;
+import androidx.loader.content.AsyncTaskLoader;
+
+import java.util.Arrays;
+
+/**
+ * Loads the notes list and groups it into a {@link NoteListModel} on the loader's background
+ * thread, so the UI thread only receives a finished model.
+ *
+ * A loader created with a base model loads one more page and appends it to that model. Such a
+ * page loader does not watch for changes; the loader of the first page does, and reloads every
+ * row the list holds.
+ *
+ * A search loader can also be told to {@link #narrow} the complete results of a search that
+ * its own search text extends. It then asks the provider to check the new terms against just
+ * those notes and keeps the ones that still match, so typing more of a word costs time in the
+ * number of results rather than the size of the notebook.
+ */
+class NoteListLoader extends AsyncTaskLoader<NoteListModel> {
+
+    private final ContentObserver mObserver = new ForceLoadContentObserver();
+    private final NoteListModel mBase;
+    private Uri mUri;
+    private final String[] mProjection;
+    private final String mSelection;
+    private final String[] mSelectionArgs;
+    private final String mSortOrder;
+
+    // Results the next load narrows instead of searching everything; cleared by content changes
+    private volatile NoteListModel mNarrowed;
+
+    private NoteListModel mModel;
+    private boolean mObserving;
+    private CancellationSignal mCancellationSignal;
+
+    NoteListLoader(Context context, NoteListModel base, Uri uri, String[] projection, String selection,
+                   String[] selectionArgs, String sortOrder) {
+        super(context);
+        mBase = base;
+        mUri = uri;
+        mProjection = projection;
+        mSelection = selection;
+        mSelectionArgs = selectionArgs;
+        mSortOrder = sortOrder;
+    }
+
+    Uri getUri() {
+        return mUri;
+    }
+
+    /**
+     * Changes the URI used by the next load, e.g. to widen the limit of a paged query.
+     */
+    void setUri(Uri uri) {
+        mUri = uri;
+    }
+
+    /**
+     * Makes the next load narrow {@code results}, the complete results of a search for a prefix
+     * of this loader's search text, instead of searching the whole notebook.
+     */
+    void narrow(NoteListModel results) {
+        mNarrowed = results;
+    }
+
+    @Override
+    public NoteListModel loadInBackground() {
+        NoteListModel narrowed = mNarrowed;
+        if (narrowed != null) {
+            return loadNarrowed(narrowed);
+        }
+        synchronized (this) {
+            if (isLoadInBackgroundCanceled()) {
+                throw new OperationCanceledException();
+            }
+            mCancellationSignal = new CancellationSignal();
+        }
+        try {
+            Cursor c = ContentResolverCompat.query(getContext().getContentResolver(), mUri, mProjection,
+                    mSelection, mSelectionArgs, mSortOrder, mCancellationSignal);
+            if (c == null) {
+                return mBase != null ? mBase : NoteListModel.EMPTY;
+            }
+            try {
+                return NoteListModel.append(mBase != null ? mBase : NoteListModel.EMPTY, c);
+            } catch (android.os.OperationCanceledException e) {
+                // The cursor window is filled lazily, after the compat wrapper has returned.
+                throw new OperationCanceledException();
+            } finally {
+                c.close();
+            }
+        } finally {
+            synchronized (this) {
+                mCancellationSignal = null;
+            }
+        }
+    }
+
+    private NoteListModel loadNarrowed(NoteListModel narrowed) {
+        StringBuilder within = new StringBuilder();
+        for (int i = 0; i < narrowed.getNoteCount(); i++) {
+            if (i > 0) {
+                within.append(',');
+            }
+            within.append(narrowed.getId(i));
+        }
+        Uri uri = mUri.buildUpon()
+                .appendQueryParameter(NotePad.Notes.QUERY_PARAMETER_WITHIN, within.toString())
+                .build();
+
+        synchronized (this) {
+            if (isLoadInBackgroundCanceled()) {
+                throw new OperationCanceledException();
+            }
+            mCancellationSignal = new CancellationSignal();
+        }
+        try {
+            Cursor c = ContentResolverCompat.query(getContext().getContentResolver(), uri,
+                    new String[]{NotePad.Notes._ID}, null, null, null, mCancellationSignal);
+            if (c == null) {
+                return narrowed;
+            }
+            try {
+                long[] ids = new long[c.getCount()];
+                for (int i = 0; c.moveToNext(); i++) {
+                    ids[i] = c.getLong(0);
+                }
+                Arrays.sort(ids);
+                return NoteListModel.retain(narrowed, ids);
+            } catch (android.os.OperationCanceledException e) {
+                throw new OperationCanceledException();
+            } finally {
+                c.close();
+            }
+        } finally {
+            synchronized (this) {
+                mCancellationSignal = null;
+            }
+        }
+    }
+
+    @Override
+    public void onContentChanged() {
+        // Notes may have started matching that the narrowed results never held.
+        mNarrowed = null;
+        super.onContentChanged();
+    }
+
+    @Override
+    public void cancelLoadInBackground() {
+        super.cancelLoadInBackground();
+        synchronized (this) {
+            if (mCancellationSignal != null) {
+                mCancellationSignal.cancel();
+            }
+        }
+    }
+
+    @Override
+    public void deliverResult(NoteListModel model) {
+        if (isReset()) {
+            return;
+        }
+        mModel = model;
+        if (isStarted()) {
+            super.deliverResult(model);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (mBase == null && !mObserving) {
+            getContext().getContentResolver().registerContentObserver(NotePad.Notes.CONTENT_URI, true, mObserver);
+            mObserving = true;
+        }
+        if (mModel != null) {
+            deliverResult(mModel);
+        }
+        if (takeContentChanged() || mModel == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+        if (mObserving) {
+            getContext().getContentResolver().unregisterContentObserver(mObserver);
+            mObserving = false;
+        }
+        mModel = null;
+    }
+}
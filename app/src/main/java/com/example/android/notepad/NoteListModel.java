@@ -0,0 +1,210 @@
+package com.example.android.notepad;
+
+import android.database.Cursor;
+
+import java.util.Arrays;
+
+/**
+ * Immutable contents of the categorised notes list: the notes in list order plus the flattened
+ * rows the adapter displays, with a header row in front of each category.
+ *
+ * The model is built in one pass over a cursor sorted by category id, so a header is emitted
+ * whenever the id changes and nothing has to be sorted, hashed or compared as text. Ids and
+ * timestamps are kept in primitive arrays, so a large notebook does not turn into one object per
+ * note.
+ */
+final class NoteListModel {
+
+    static final NoteListModel EMPTY = new NoteListModel(new long[0], new long[0], new String[0], new long[0], 0,
+            new int[0], 0, new long[0], new String[0]);
+
+    // Per note, in list order
+    private final long[] mIds;
+    private final long[] mModified;
+    private final String[] mTitles;
+    private final long[] mCategoryIds;
+    private final int mNoteCount;
+
+    // Per row: the index of the note shown in the row, or -(header index + 1) for a category header
+    private final int[] mRows;
+    private final int mRowCount;
+    // Per header: the category id and name
+    private final long[] mHeaderIds;
+    private final String[] mHeaders;
+
+    private NoteListModel(long[] ids, long[] modified, String[] titles, long[] categoryIds, int noteCount,
+                          int[] rows, int rowCount, long[] headerIds, String[] headers) {
+        mIds = ids;
+        mModified = modified;
+        mTitles = titles;
+        mCategoryIds = categoryIds;
+        mNoteCount = noteCount;
+        mRows = rows;
+        mRowCount = rowCount;
+        mHeaderIds = headerIds;
+        mHeaders = headers;
+    }
+
+    /**
+     * Builds the model of {@code base} followed by the rows of {@code c}, which must be sorted by
+     * category id and continue where {@code base} ends. The cursor needs the _id, title,
+     * modified, category_id and category columns; the category name is only read for headers.
+     */
+    static NoteListModel append(NoteListModel base, Cursor c) {
+        int idCol = c.getColumnIndexOrThrow(NotePad.Notes._ID);
+        int titleCol = c.getColumnIndexOrThrow(NotePad.Notes.COLUMN_NAME_TITLE);
+        int modDateCol = c.getColumnIndexOrThrow(NotePad.Notes.COLUMN_NAME_MODIFICATION_DATE);
+        int categoryIdCol = c.getColumnIndexOrThrow(NotePad.Notes.COLUMN_NAME_CATEGORY_ID);
+        int categoryCol = c.getColumnIndexOrThrow(NotePad.Notes.COLUMN_NAME_CATEGORY);
+
+        int noteCapacity = base.mNoteCount + c.getCount();
+        long[] ids = Arrays.copyOf(base.mIds, noteCapacity);
+        long[] modified = Arrays.copyOf(base.mModified, noteCapacity);
+        String[] titles = Arrays.copyOf(base.mTitles, noteCapacity);
+        long[] categoryIds = Arrays.copyOf(base.mCategoryIds, noteCapacity);
+        int[] rows = Arrays.copyOf(base.mRows, base.mRowCount + 2 * c.getCount());
+        int headerCapacity = Math.max(8, base.mHeaders.length);
+        long[] headerIds = Arrays.copyOf(base.mHeaderIds, headerCapacity);
+        String[] headers = Arrays.copyOf(base.mHeaders, headerCapacity);
+        int headerCount = base.getHeaderCount();
+
+        int noteCount = base.mNoteCount;
+        int rowCount = base.mRowCount;
+        long lastCategoryId = noteCount > 0 ? categoryIds[noteCount - 1] : 0;
+
+        c.moveToPosition(-1);
+        while (c.moveToNext()) {
+            long categoryId = c.getLong(categoryIdCol);
+            if (noteCount == 0 || categoryId != lastCategoryId) {
+                if (headerCount == headers.length) {
+                    headerIds = Arrays.copyOf(headerIds, headerCount * 2);
+                    headers = Arrays.copyOf(headers, headerCount * 2);
+                }
+                String category = c.getString(categoryCol);
+                headerIds[headerCount] = categoryId;
+                headers[headerCount] = category != null ? category : NotePad.Notes.DEFAULT_CATEGORY;
+                rows[rowCount++] = -(headerCount + 1);
+                headerCount++;
+                lastCategoryId = categoryId;
+            }
+
+            ids[noteCount] = c.getLong(idCol);
+            titles[noteCount] = c.getString(titleCol);
+            modified[noteCount] = c.getLong(modDateCol);
+            categoryIds[noteCount] = categoryId;
+            rows[rowCount++] = noteCount;
+            noteCount++;
+        }
+
+        return new NoteListModel(ids, modified, titles, categoryIds, noteCount, rows, rowCount, headerIds, headers);
+    }
+
+    /**
+     * Builds the model of the notes of {@code base} whose id is in {@code ids}, which must be
+     * sorted, keeping their order and grouping.
+     */
+    static NoteListModel retain(NoteListModel base, long[] ids) {
+        long[] keptIds = new long[base.mNoteCount];
+        long[] modified = new long[base.mNoteCount];
+        String[] titles = new String[base.mNoteCount];
+        long[] categoryIds = new long[base.mNoteCount];
+        int[] rows = new int[base.mRowCount];
+        long[] headerIds = new long[Math.max(8, base.mHeaders.length)];
+        String[] headers = new String[headerIds.length];
+        int headerCount = 0;
+        int noteCount = 0;
+        int rowCount = 0;
+        int baseHeader = -1;
+        int lastHeader = -1;
+
+        for (int row = 0; row < base.mRowCount; row++) {
+            int i = base.mRows[row];
+            if (i < 0) {
+                baseHeader = -i - 1;
+                continue;
+            }
+            if (Arrays.binarySearch(ids, base.mIds[i]) < 0) {
+                continue;
+            }
+            if (baseHeader != lastHeader) {
+                headerIds[headerCount] = base.mHeaderIds[baseHeader];
+                headers[headerCount] = base.mHeaders[baseHeader];
+                rows[rowCount++] = -(headerCount + 1);
+                headerCount++;
+                lastHeader = baseHeader;
+            }
+            keptIds[noteCount] = base.mIds[i];
+            modified[noteCount] = base.mModified[i];
+            titles[noteCount] = base.mTitles[i];
+            categoryIds[noteCount] = base.mCategoryIds[i];
+            rows[rowCount++] = noteCount;
+            noteCount++;
+        }
+
+        return new NoteListModel(keptIds, modified, titles, categoryIds, noteCount, rows, rowCount, headerIds,
+                headers);
+    }
+
+    int getRowCount() {
+        return mRowCount;
+    }
+
+    int getNoteCount() {
+        return mNoteCount;
+    }
+
+    boolean isHeader(int row) {
+        return mRows[row] < 0;
+    }
+
+    String getHeader(int row) {
+        return mHeaders[-mRows[row] - 1];
+    }
+
+    /**
+     * Returns the id of the category whose header is shown in {@code row}.
+     */
+    long getHeaderId(int row) {
+        return mHeaderIds[-mRows[row] - 1];
+    }
+
+    /**
+     * Returns the index of the note shown in {@code row}, for the note accessors below.
+     */
+    int getNoteIndex(int row) {
+        return mRows[row];
+    }
+
+    long getId(int note) {
+        return mIds[note];
+    }
+
+    String getTitle(int note) {
+        return mTitles[note];
+    }
+
+    long getModified(int note) {
+        return mModified[note];
+    }
+
+    long getCategoryId(int note) {
+        return mCategoryIds[note];
+    }
+
+    /**
+     * Copies the note shown in {@code row} into a holder for click listeners.
+     */
+    NotesListFragment.NoteHolder getNote(int row) {
+        int note = mRows[row];
+        NotesListFragment.NoteHolder holder = new NotesListFragment.NoteHolder();
+        holder.id = mIds[note];
+        holder.title = mTitles[note];
+        holder.modificationDate = mModified[note];
+        holder.categoryId = mCategoryIds[note];
+        return holder;
+    }
+
+    private int getHeaderCount() {
+        return mRowCount - mNoteCount;
+    }
+}
@@ -18,6 +18,9 @@ package com.example.android.notepad;
 
 import android.net.Uri;
 import android.provider.BaseColumns;
+import android.text.TextUtils;
+
+import java.util.Arrays;
 
 /**
  * Defines a contract between the Note Pad content provider and its clients. A contract defines the
@@ -32,6 +35,18 @@ public final class NotePad {
     private NotePad() {
     }
 
+    /**
+     * Provider method, for use with {@link android.content.ContentResolver#call}, returning the
+     * hit and miss counters of the provider's single-row caches as ints under the
+     * KEY_*_CACHE_* keys below.
+     */
+    public static final String METHOD_GET_CACHE_STATS = "get_cache_stats";
+
+    public static final String KEY_NOTE_CACHE_HITS = "note_cache_hits";
+    public static final String KEY_NOTE_CACHE_MISSES = "note_cache_misses";
+    public static final String KEY_TODO_CACHE_HITS = "todo_cache_hits";
+    public static final String KEY_TODO_CACHE_MISSES = "todo_cache_misses";
+
     /**
      * Notes table contract
      */
@@ -69,6 +84,11 @@ public final class NotePad {
          */
         public static final int NOTE_ID_PATH_POSITION = 1;
 
+        /**
+         * Path part for the full-text search URI
+         */
+        private static final String PATH_SEARCH = "/notes/search";
+
         /**
          * Path part for the Live Folder URI
          */
@@ -93,6 +113,49 @@ public final class NotePad {
         public static final Uri CONTENT_ID_URI_PATTERN
             = Uri.parse(SCHEME + AUTHORITY + PATH_NOTE_ID + "/#");
 
+        /**
+         * The content URI for full-text searches over note titles and bodies. The search terms
+         * are passed in the {@link #QUERY_PARAMETER_SEARCH} query parameter; matches are returned
+         * with the same columns as {@link #CONTENT_URI}, best matches first.
+         */
+        public static final Uri SEARCH_URI = Uri.parse(SCHEME + AUTHORITY + PATH_SEARCH);
+
+        /**
+         * Query parameter of {@link #SEARCH_URI} holding the user's search terms
+         */
+        public static final String QUERY_PARAMETER_SEARCH = "q";
+
+        /**
+         * Query parameter of {@link #SEARCH_URI} restricting the search to a comma separated list
+         * of note ids, typically the results of a search the new terms only extend. Results
+         * come back in the default sort order rather than by relevance.
+         */
+        public static final String QUERY_PARAMETER_WITHIN = "within";
+
+        /**
+         * Query parameter of {@link #CONTENT_URI} limiting the number of rows returned. When it is
+         * present, rows are returned in {@link #LIST_SORT_ORDER} and the caller can ask for the
+         * next page by passing the sort key of the last row it received in
+         * {@link #QUERY_PARAMETER_AFTER_CATEGORY_ID}, {@link #QUERY_PARAMETER_AFTER_MODIFIED} and
+         * {@link #QUERY_PARAMETER_AFTER_ID}.
+         */
+        public static final String QUERY_PARAMETER_LIMIT = "limit";
+
+        /**
+         * Query parameter holding the category id of the last row of the previous page
+         */
+        public static final String QUERY_PARAMETER_AFTER_CATEGORY_ID = "after_category_id";
+
+        /**
+         * Query parameter holding the modification date of the last row of the previous page
+         */
+        public static final String QUERY_PARAMETER_AFTER_MODIFIED = "after_modified";
+
+        /**
+         * Query parameter holding the id of the last row of the previous page
+         */
+        public static final String QUERY_PARAMETER_AFTER_ID = "after_id";
+
         /**
          * The content Uri pattern for a notes listing for live folders
          */
@@ -114,11 +177,24 @@ public final class NotePad {
          */
         public static final String CONTENT_ITEM_TYPE = "vnd.android.cursor.item/vnd.google.note";
 
+        /**
+         * The MIME type of the newline-delimited JSON export offered when {@link #CONTENT_URI}
+         * is opened as a stream. Each line is one note object.
+         */
+        public static final String EXPORT_TYPE_NDJSON = "application/x-ndjson";
+
         /**
          * The default sort order for this table
          */
         public static final String DEFAULT_SORT_ORDER = "modified DESC";
 
+        /**
+         * The sort order of the categorised notes list. Categories come in the order they were
+         * created, which keeps the sort on integers. The trailing id makes the order total,
+         * which paged queries rely on.
+         */
+        public static final String LIST_SORT_ORDER = "category_id ASC, modified DESC, _id ASC";
+
         /*
          * Column definitions
          */
@@ -135,6 +211,13 @@ public final class NotePad {
          */
         public static final String COLUMN_NAME_NOTE = "note";
 
+        /**
+         * Column name for the length of the note content in characters, computed by the provider
+         * so that a client can size a large note before reading its content
+         * <P>Type: INTEGER (read-only)</P>
+         */
+        public static final String COLUMN_NAME_NOTE_LENGTH = "note_length";
+
         /**
          * Column name for the creation timestamp
          * <P>Type: INTEGER (long from System.curentTimeMillis())</P>
@@ -148,10 +231,539 @@ public final class NotePad {
         public static final String COLUMN_NAME_MODIFICATION_DATE = "modified";
 
         /**
-         * Column name for the category of the note
+         * Column name for the id of the note's category in {@link Categories}
+         * <P>Type: INTEGER</P>
+         */
+        public static final String COLUMN_NAME_CATEGORY_ID = "category_id";
+
+        /**
+         * Column name for the name of the note's category, read from {@link Categories}. Writing
+         * a name instead of {@link #COLUMN_NAME_CATEGORY_ID} files the note under the category
+         * of that name, which is created if it does not exist yet.
          * <P>Type: TEXT</P>
          */
         public static final String COLUMN_NAME_CATEGORY = "category";
+
+        /**
+         * The category given to notes created or saved without one. The provider never stores
+         * a note without a category.
+         */
+        public static final String DEFAULT_CATEGORY = "Uncategorized";
+    }
+
+    /**
+     * Categories contract. Each category is stored once and notes refer to it by id, so renaming
+     * a category is a single-row update. Querying {@link #CONTENT_URI} lists the categories that
+     * have notes, each with the number of notes in it. A category is created by writing its name
+     * to {@link Notes#COLUMN_NAME_CATEGORY}, and renamed by updating its item URI.
+     */
+    public static final class Categories implements BaseColumns {
+
+        // This class cannot be instantiated
+        private Categories() {}
+
+        /**
+         * The table name offered by this provider
+         */
+        public static final String TABLE_NAME = "categories";
+
+        /**
+         * The content:// style URL for the note categories
+         */
+        public static final Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/notes/categories");
+
+        /**
+         * The content URI base for a single category. Callers must append a numeric category id.
+         */
+        public static final Uri CONTENT_ID_URI_BASE = Uri.parse("content://" + AUTHORITY + "/notes/categories/");
+
+        /**
+         * 0-relative position of a category ID segment in the path part of a category ID URI
+         */
+        public static final int CATEGORY_ID_PATH_POSITION = 2;
+
+        /**
+         * The MIME type of {@link #CONTENT_URI} providing a directory of categories.
+         */
+        public static final String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.google.note.category";
+
+        /**
+         * The MIME type of a single category.
+         */
+        public static final String CONTENT_ITEM_TYPE = "vnd.android.cursor.item/vnd.google.note.category";
+
+        /**
+         * The default sort order for categories
+         */
+        public static final String DEFAULT_SORT_ORDER = "name ASC";
+
+        /**
+         * Column name for the category name. Updating it on an item URI renames the category; a
+         * name another category already has merges the two.
+         * <P>Type: TEXT</P>
+         */
+        public static final String COLUMN_NAME_NAME = "name";
+
+        /**
+         * Column name for the number of notes in the category
+         * <P>Type: INTEGER</P>
+         */
+        public static final String COLUMN_NAME_NOTE_COUNT = "note_count";
+    }
+
+    /**
+     * Tags contract. A note can carry any number of tags; the tags of one note are read and
+     * changed through {@link #buildNoteTagsUri}. Querying {@link #CONTENT_URI} lists the tags
+     * that have notes, each with its number of notes. Given the tag parameters of a
+     * {@link NoteFilter}, only the notes with those tags are counted, which is what a client
+     * needs to show how far adding each tag would narrow a tag filter.
+     */
+    public static final class Tags implements BaseColumns {
+
+        // This class cannot be instantiated
+        private Tags() {}
+
+        /**
+         * The table name offered by this provider
+         */
+        public static final String TABLE_NAME = "tags";
+
+        /**
+         * Path segment following a note ID URI for the tags of that note
+         */
+        public static final String PATH_SEGMENT = "tags";
+
+        /**
+         * 0-relative position of the tag ID segment in the path part of a note tag ID URI
+         */
+        public static final int TAG_ID_PATH_POSITION = 3;
+
+        /**
+         * The content:// style URL for all tags
+         */
+        public static final Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/notes/tags");
+
+        /**
+         * The MIME type of a directory of tags.
+         */
+        public static final String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.google.note.tag";
+
+        /**
+         * The MIME type of a single tag.
+         */
+        public static final String CONTENT_ITEM_TYPE = "vnd.android.cursor.item/vnd.google.note.tag";
+
+        /**
+         * The default sort order for tags
+         */
+        public static final String DEFAULT_SORT_ORDER = "name ASC";
+
+        /**
+         * Column name for the tag name. Inserting a name into a note's tags URI tags the note,
+         * creating the tag if it does not exist yet.
+         * <P>Type: TEXT</P>
+         */
+        public static final String COLUMN_NAME_NAME = "name";
+
+        /**
+         * Column name for the number of notes with the tag. Only available from {@link #CONTENT_URI}.
+         * <P>Type: INTEGER</P>
+         */
+        public static final String COLUMN_NAME_NOTE_COUNT = "note_count";
+
+        /**
+         * Returns the URI of the tags of the note with {@code noteId}.
+         */
+        public static Uri buildNoteTagsUri(long noteId) {
+            return Notes.CONTENT_ID_URI_BASE.buildUpon().appendPath(Long.toString(noteId))
+                    .appendPath(PATH_SEGMENT).build();
+        }
+
+        /**
+         * Returns the URI of tag {@code tagId} on the note with {@code noteId}. Deleting it
+         * removes the tag from the note.
+         */
+        public static Uri buildNoteTagUri(long noteId, long tagId) {
+            return buildNoteTagsUri(noteId).buildUpon().appendPath(Long.toString(tagId)).build();
+        }
+    }
+
+    /**
+     * The table linking notes to their tags. It is maintained by the provider and is not
+     * directly exposed; clients go through {@link Tags}.
+     */
+    static final class NoteTags {
+
+        // This class cannot be instantiated
+        private NoteTags() {}
+
+        static final String TABLE_NAME = "note_tags";
+
+        static final String COLUMN_NAME_NOTE_ID = "note_id";
+        static final String COLUMN_NAME_TAG_ID = "tag_id";
+    }
+
+    /**
+     * A filter on the notes list combining search text, a category, tags and a range of
+     * modification dates; parts left unset match every note. Instances are immutable.
+     *
+     * A filter travels to the provider as query parameters, added by {@link #appendTo} and read
+     * back by {@link #fromUri}. Search text needs {@link Notes#SEARCH_URI}; the other parts work
+     * on both that and {@link Notes#CONTENT_URI}, where they are answered from the notes list
+     * index. Tags are resolved by the provider's in-memory tag index before the query runs.
+     */
+    public static final class NoteFilter {
+
+        /**
+         * Value of an unbounded end of the modification date range
+         */
+        public static final long UNBOUNDED = 0;
+
+        /**
+         * Category id of a filter listing every category
+         */
+        public static final long ALL_CATEGORIES = 0;
+
+        public static final NoteFilter EMPTY = new NoteFilter(null, ALL_CATEGORIES, UNBOUNDED, UNBOUNDED);
+
+        private static final long[] NO_TAGS = new long[0];
+
+        private static final String QUERY_PARAMETER_CATEGORY_ID = "category_id";
+        private static final String QUERY_PARAMETER_TAGS = "tags";
+        private static final String QUERY_PARAMETER_TAG_MATCH = "tag_match";
+        private static final String TAG_MATCH_ALL = "all";
+        private static final String TAG_MATCH_ANY = "any";
+        private static final String QUERY_PARAMETER_MODIFIED_FROM = "modified_from";
+        private static final String QUERY_PARAMETER_MODIFIED_TO = "modified_to";
+
+        private final String mText;
+        private final long mCategoryId;
+        private final long mModifiedFrom;
+        private final long mModifiedTo;
+        private final long[] mTagIds;
+        private final boolean mMatchAllTags;
+
+        /**
+         * @param text         search terms, or null
+         * @param categoryId   id of the only category to list, or {@link #ALL_CATEGORIES}
+         * @param modifiedFrom earliest modification date listed, inclusive, or {@link #UNBOUNDED}
+         * @param modifiedTo   modification date listed notes must be older than, or {@link #UNBOUNDED}
+         */
+        public NoteFilter(String text, long categoryId, long modifiedFrom, long modifiedTo) {
+            this(text, categoryId, modifiedFrom, modifiedTo, NO_TAGS, true);
+        }
+
+        private NoteFilter(String text, long categoryId, long modifiedFrom, long modifiedTo, long[] tagIds,
+                           boolean matchAllTags) {
+            mText = text == null || text.isEmpty() ? null : text;
+            mCategoryId = categoryId;
+            mModifiedFrom = modifiedFrom;
+            mModifiedTo = modifiedTo;
+            mTagIds = tagIds;
+            mMatchAllTags = matchAllTags || tagIds.length == 0;
+        }
+
+        public NoteFilter withText(String text) {
+            return new NoteFilter(text, mCategoryId, mModifiedFrom, mModifiedTo, mTagIds, mMatchAllTags);
+        }
+
+        public NoteFilter withCategory(long categoryId) {
+            return new NoteFilter(mText, categoryId, mModifiedFrom, mModifiedTo, mTagIds, mMatchAllTags);
+        }
+
+        public NoteFilter withModifiedRange(long from, long to) {
+            return new NoteFilter(mText, mCategoryId, from, to, mTagIds, mMatchAllTags);
+        }
+
+        /**
+         * Returns a filter listing the notes with all of {@code tagIds} if {@code matchAll} is
+         * set, or with any of them otherwise. No tags lists every note.
+         */
+        public NoteFilter withTags(long[] tagIds, boolean matchAll) {
+            return new NoteFilter(mText, mCategoryId, mModifiedFrom, mModifiedTo, sortedTagIds(tagIds), matchAll);
+        }
+
+        public String getText() {
+            return mText;
+        }
+
+        public long getCategoryId() {
+            return mCategoryId;
+        }
+
+        public long getModifiedFrom() {
+            return mModifiedFrom;
+        }
+
+        public long getModifiedTo() {
+            return mModifiedTo;
+        }
+
+        public long[] getTagIds() {
+            return mTagIds.clone();
+        }
+
+        public boolean isMatchAllTags() {
+            return mMatchAllTags;
+        }
+
+        public boolean hasText() {
+            return mText != null;
+        }
+
+        public boolean hasTags() {
+            return mTagIds.length > 0;
+        }
+
+        /**
+         * Adds this filter to a notes or search URI.
+         */
+        public Uri.Builder appendTo(Uri.Builder builder) {
+            if (mText != null) {
+                builder.appendQueryParameter(Notes.QUERY_PARAMETER_SEARCH, mText);
+            }
+            if (mCategoryId != ALL_CATEGORIES) {
+                builder.appendQueryParameter(QUERY_PARAMETER_CATEGORY_ID, Long.toString(mCategoryId));
+            }
+            if (mModifiedFrom != UNBOUNDED) {
+                builder.appendQueryParameter(QUERY_PARAMETER_MODIFIED_FROM, Long.toString(mModifiedFrom));
+            }
+            if (mModifiedTo != UNBOUNDED) {
+                builder.appendQueryParameter(QUERY_PARAMETER_MODIFIED_TO, Long.toString(mModifiedTo));
+            }
+            if (mTagIds.length > 0) {
+                StringBuilder tags = new StringBuilder();
+                for (long tagId : mTagIds) {
+                    if (tags.length() > 0) {
+                        tags.append(',');
+                    }
+                    tags.append(tagId);
+                }
+                builder.appendQueryParameter(QUERY_PARAMETER_TAGS, tags.toString());
+                builder.appendQueryParameter(QUERY_PARAMETER_TAG_MATCH, mMatchAllTags ? TAG_MATCH_ALL : TAG_MATCH_ANY);
+            }
+            return builder;
+        }
+
+        /**
+         * Reads the filter that {@link #appendTo} added to {@code uri}.
+         */
+        public static NoteFilter fromUri(Uri uri) {
+            String categoryId = uri.getQueryParameter(QUERY_PARAMETER_CATEGORY_ID);
+            String from = uri.getQueryParameter(QUERY_PARAMETER_MODIFIED_FROM);
+            String to = uri.getQueryParameter(QUERY_PARAMETER_MODIFIED_TO);
+            String tags = uri.getQueryParameter(QUERY_PARAMETER_TAGS);
+            long[] tagIds = NO_TAGS;
+            if (!TextUtils.isEmpty(tags)) {
+                String[] parts = tags.split(",");
+                tagIds = new long[parts.length];
+                for (int i = 0; i < parts.length; i++) {
+                    tagIds[i] = Long.parseLong(parts[i]);
+                }
+            }
+            return new NoteFilter(uri.getQueryParameter(Notes.QUERY_PARAMETER_SEARCH),
+                    categoryId != null ? Long.parseLong(categoryId) : ALL_CATEGORIES,
+                    from != null ? Long.parseLong(from) : UNBOUNDED,
+                    to != null ? Long.parseLong(to) : UNBOUNDED,
+                    sortedTagIds(tagIds),
+                    !TAG_MATCH_ANY.equals(uri.getQueryParameter(QUERY_PARAMETER_TAG_MATCH)));
+        }
+
+        /**
+         * Returns a sorted copy of {@code tagIds} without duplicates, so equal tag sets compare
+         * equal.
+         */
+        private static long[] sortedTagIds(long[] tagIds) {
+            if (tagIds == null || tagIds.length == 0) {
+                return NO_TAGS;
+            }
+            long[] sorted = tagIds.clone();
+            Arrays.sort(sorted);
+            int n = 1;
+            for (int i = 1; i < sorted.length; i++) {
+                if (sorted[i] != sorted[n - 1]) {
+                    sorted[n++] = sorted[i];
+                }
+            }
+            return Arrays.copyOf(sorted, n);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof NoteFilter)) {
+                return false;
+            }
+            NoteFilter other = (NoteFilter) o;
+            return TextUtils.equals(mText, other.mText) && mCategoryId == other.mCategoryId
+                    && mModifiedFrom == other.mModifiedFrom && mModifiedTo == other.mModifiedTo
+                    && Arrays.equals(mTagIds, other.mTagIds) && mMatchAllTags == other.mMatchAllTags;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mText != null ? mText.hashCode() : 0;
+            result = 31 * result + (int) (mCategoryId ^ (mCategoryId >>> 32));
+            result = 31 * result + (int) (mModifiedFrom ^ (mModifiedFrom >>> 32));
+            result = 31 * result + (int) (mModifiedTo ^ (mModifiedTo >>> 32));
+            result = 31 * result + Arrays.hashCode(mTagIds);
+            result = 31 * result + (mMatchAllTags ? 1 : 0);
+            return result;
+        }
+    }
+
+    /**
+     * Typeahead suggestions contract. Suggestions are the distinct note titles or categories
+     * starting with a prefix, ignoring case, answered from memory rather than the database.
+     */
+    public static final class Suggestions implements BaseColumns {
+
+        // This class cannot be instantiated
+        private Suggestions() {}
+
+        /**
+         * The content:// style URL for suggestions. Pass the prefix in
+         * {@link #QUERY_PARAMETER_PREFIX} and the kind of value in {@link #QUERY_PARAMETER_KIND}.
+         */
+        public static final Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/notes/suggestions");
+
+        /**
+         * The MIME type of {@link #CONTENT_URI} providing a directory of suggestions.
+         */
+        public static final String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.google.note.suggestion";
+
+        /**
+         * Query parameter holding the prefix typed so far. Missing or empty matches everything.
+         */
+        public static final String QUERY_PARAMETER_PREFIX = "q";
+
+        /**
+         * Query parameter selecting {@link #KIND_TITLE} or {@link #KIND_CATEGORY}; titles if missing
+         */
+        public static final String QUERY_PARAMETER_KIND = "kind";
+
+        /**
+         * Query parameter limiting the number of suggestions, {@link #DEFAULT_LIMIT} if missing
+         */
+        public static final String QUERY_PARAMETER_LIMIT = "limit";
+
+        public static final String KIND_TITLE = "title";
+        public static final String KIND_CATEGORY = "category";
+
+        public static final int DEFAULT_LIMIT = 20;
+
+        /**
+         * Column name for the suggested title or category, in alphabetical order ignoring case
+         * <P>Type: TEXT</P>
+         */
+        public static final String COLUMN_NAME_SUGGESTION = "suggestion";
+
+        /**
+         * Column name for the number of notes with the suggested title or category
+         * <P>Type: INTEGER</P>
+         */
+        public static final String COLUMN_NAME_NOTE_COUNT = "note_count";
+    }
+
+    /**
+     * Revision history contract. The provider records a revision every time the body of a single
+     * note is updated through its note URI. Revisions are read-only; the body of one revision is
+     * rebuilt when its item URI is queried.
+     */
+    public static final class Revisions implements BaseColumns {
+
+        // This class cannot be instantiated
+        private Revisions() {}
+
+        /**
+         * The table name offered by this provider
+         */
+        public static final String TABLE_NAME = "note_revisions";
+
+        /**
+         * Path segment following a note ID URI for the revisions of that note
+         */
+        public static final String PATH_SEGMENT = "revisions";
+
+        /**
+         * 0-relative position of the revision ID segment in the path part of a revision ID URI
+         */
+        public static final int REVISION_ID_PATH_POSITION = 3;
+
+        /**
+         * The MIME type of a directory of revisions.
+         */
+        public static final String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.google.note.revision";
+
+        /**
+         * The MIME type of a single revision.
+         */
+        public static final String CONTENT_ITEM_TYPE = "vnd.android.cursor.item/vnd.google.note.revision";
+
+        /**
+         * The default sort order for revisions, newest first
+         */
+        public static final String DEFAULT_SORT_ORDER = "_id DESC";
+
+        /**
+         * Provider method, for use with {@link android.content.ContentResolver#call}, restoring
+         * the note of the revision whose item URI is passed as the argument to that revision's
+         * body. The restore is itself recorded as a new revision.
+         */
+        public static final String METHOD_RESTORE = "restore_revision";
+
+        /**
+         * Column name for the id of the note the revision belongs to
+         * <P>Type: INTEGER</P>
+         */
+        public static final String COLUMN_NAME_NOTE_ID = "note_id";
+
+        /**
+         * Column name for the time the revision was saved
+         * <P>Type: INTEGER (long from System.curentTimeMillis())</P>
+         */
+        public static final String COLUMN_NAME_CREATE_DATE = "created";
+
+        /**
+         * Column name for the length of the note body at this revision, in characters
+         * <P>Type: INTEGER</P>
+         */
+        public static final String COLUMN_NAME_LENGTH = "length";
+
+        /**
+         * Column name for the note body at this revision. Only available from a revision ID URI.
+         * <P>Type: TEXT</P>
+         */
+        public static final String COLUMN_NAME_NOTE = Notes.COLUMN_NAME_NOTE;
+
+        /**
+         * Returns the URI of the revisions of the note with {@code noteId}.
+         */
+        public static Uri buildRevisionsUri(long noteId) {
+            return Notes.CONTENT_ID_URI_BASE.buildUpon().appendPath(Long.toString(noteId))
+                    .appendPath(PATH_SEGMENT).build();
+        }
+
+        /**
+         * Returns the URI of one revision of the note with {@code noteId}.
+         */
+        public static Uri buildRevisionUri(long noteId, long revisionId) {
+            return buildRevisionsUri(noteId).buildUpon().appendPath(Long.toString(revisionId)).build();
+        }
+    }
+
+    /**
+     * Full-text index over the title and body of every note. The index is maintained by the
+     * provider and is not directly exposed; clients search it through {@link Notes#SEARCH_URI}.
+     */
+    static final class NotesFts {
+
+        // This class cannot be instantiated
+        private NotesFts() {}
+
+        /**
+         * The name of the FTS virtual table shadowing {@link Notes#TABLE_NAME}
+         */
+        static final String TABLE_NAME = "notes_fts";
     }
 
      /**
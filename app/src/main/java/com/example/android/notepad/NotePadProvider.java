@@ -18,31 +18,57 @@ package com.example.android.notepad;
 
 import android.content.ClipDescription;
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.content.res.AssetFileDescriptor;
 import android.content.res.Resources;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.ParcelFileDescriptor;
+import android.os.Process;
+import android.provider.BaseColumns;
 import android.provider.LiveFolders;
 import android.text.TextUtils;
+import android.util.JsonWriter;
 import android.util.Log;
+import android.util.LruCache;
 
+import java.io.BufferedWriter;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Provides access to a database of notes. Each note has a title, the note
@@ -53,26 +79,181 @@ public class NotePadProvider extends ContentProvider implements ContentProvider.
     private static final String TAG = "NotePadProvider";
 
     private static final String DATABASE_NAME = "note_pad.db";
-    private static final int DATABASE_VERSION = 4;
+    private static final int DATABASE_VERSION = 11;
 
     private static HashMap<String, String> sNotesProjectionMap;
     private static HashMap<String, String> sTodosProjectionMap;
     private static HashMap<String, String> sLiveFolderProjectionMap;
+    private static HashMap<String, String> sSearchProjectionMap;
+    private static HashMap<String, String> sCategoriesProjectionMap;
+    private static HashMap<String, String> sRevisionsProjectionMap;
+    private static HashMap<String, String> sNoteTagsProjectionMap;
+
+    /**
+     * Search results are ranked by how many times the terms hit the title and body. offsets()
+     * emits four space separated integers per hit, so the hits are its spaces plus one, divided
+     * by four. The length of its output would not do: offsets deep into a long note take more
+     * digits than offsets near the start of a short one.
+     */
+    private static final String SEARCH_OFFSETS = "offsets(" + NotePad.NotesFts.TABLE_NAME + ")";
+    private static final String SEARCH_SORT_ORDER = "(length(" + SEARCH_OFFSETS + ") - length(replace("
+            + SEARCH_OFFSETS + ", ' ', '')) + 1) / 4 DESC, "
+            + NotePad.Notes.TABLE_NAME + "." + NotePad.Notes.COLUMN_NAME_MODIFICATION_DATE + " DESC";
 
     private static final int NOTES = 1;
     private static final int NOTE_ID = 2;
     private static final int LIVE_FOLDER_NOTES = 3;
     private static final int TODOS = 4;
     private static final int TODO_ID = 5;
+    private static final int NOTES_SEARCH = 6;
+    private static final int NOTE_CATEGORIES = 7;
+    private static final int NOTE_REVISIONS = 8;
+    private static final int NOTE_REVISION_ID = 9;
+    private static final int NOTE_SUGGESTIONS = 10;
+    private static final int NOTE_CATEGORY_ID = 11;
+    private static final int TAGS = 12;
+    private static final int NOTE_TAGS = 13;
+    private static final int NOTE_TAG_ID = 14;
+
+    /**
+     * The name of a note's category, looked up by the primary key of the categories table
+     */
+    static final String CATEGORY_NAME = "(SELECT " + NotePad.Categories.COLUMN_NAME_NAME
+            + " FROM " + NotePad.Categories.TABLE_NAME
+            + " WHERE " + NotePad.Categories.TABLE_NAME + "." + NotePad.Categories._ID
+            + " = " + NotePad.Notes.TABLE_NAME + "." + NotePad.Notes.COLUMN_NAME_CATEGORY_ID + ")";
+
+    /**
+     * Number of WAL pages after which a commit triggers an automatic checkpoint
+     */
+    private static final int WAL_AUTOCHECKPOINT_PAGES = 500;
+
+    /**
+     * Number of rows or operations from which a batch is followed by a checkpoint of its own.
+     * Smaller batches, such as the editor's saves, leave the WAL to the autocheckpoint.
+     */
+    private static final int CHECKPOINT_BATCH_SIZE = 200;
+
+    /**
+     * MIME types a single note and the whole notebook can be streamed as
+     */
+    private static final String[] NOTE_STREAM_TYPES = new String[]{ClipDescription.MIMETYPE_TEXT_PLAIN};
+    private static final String[] NOTES_STREAM_TYPES = new String[]{
+            ClipDescription.MIMETYPE_TEXT_PLAIN, NotePad.Notes.EXPORT_TYPE_NDJSON};
+
+    private static final String[] STREAM_NOTE_PROJECTION = new String[]{
+            NotePad.Notes.COLUMN_NAME_TITLE, // 0
+            "length(" + NotePad.Notes.COLUMN_NAME_NOTE + ")" // 1
+    };
+
+    // Characters of a note body read per query, and bytes buffered before each write to the pipe
+    private static final int STREAM_CHUNK_CHARS = 16 * 1024;
+    private static final int STREAM_BUFFER_SIZE = 32 * 1024;
+
+    // Each row carries the first chunk of its body; longer bodies are read on in further chunks.
+    private static final String[] STREAM_NOTES_PROJECTION = new String[]{
+            NotePad.Notes._ID, // 0
+            NotePad.Notes.COLUMN_NAME_TITLE, // 1
+            CATEGORY_NAME, // 2
+            NotePad.Notes.COLUMN_NAME_CREATE_DATE, // 3
+            NotePad.Notes.COLUMN_NAME_MODIFICATION_DATE, // 4
+            "length(" + NotePad.Notes.COLUMN_NAME_NOTE + ")", // 5
+            "substr(" + NotePad.Notes.COLUMN_NAME_NOTE + ", 1, " + STREAM_CHUNK_CHARS + ")" // 6
+    };
+
+    /**
+     * Columns held by the single-row caches, and the memory each cache may use
+     */
+    private static final String[] NOTE_CACHE_COLUMNS = new String[]{
+            NotePad.Notes._ID,
+            NotePad.Notes.COLUMN_NAME_TITLE,
+            NotePad.Notes.COLUMN_NAME_NOTE,
+            NotePad.Notes.COLUMN_NAME_CREATE_DATE,
+            NotePad.Notes.COLUMN_NAME_MODIFICATION_DATE,
+            NotePad.Notes.COLUMN_NAME_CATEGORY_ID,
+            NotePad.Notes.COLUMN_NAME_CATEGORY,
+            NotePad.Notes.COLUMN_NAME_NOTE_LENGTH
+    };
+    private static final String[] TODO_CACHE_COLUMNS = new String[]{
+            NotePad.Todos._ID,
+            NotePad.Todos.COLUMN_NAME_TEXT,
+            NotePad.Todos.COLUMN_NAME_COLOR,
+            NotePad.Todos.COLUMN_NAME_IS_COMPLETED,
+            NotePad.Todos.COLUMN_NAME_CREATE_DATE,
+            NotePad.Todos.COLUMN_NAME_MODIFICATION_DATE
+    };
+    private static final int NOTE_CACHE_BYTES = 2 * 1024 * 1024;
+    private static final int TODO_CACHE_BYTES = 256 * 1024;
+    // Longest body the note cache holds, the size the editor reads in one chunk; longer notes
+    // are read in chunks anyway, and their rows are left to regular queries.
+    private static final int NOTE_CACHE_MAX_BODY_CHARS = 64 * 1024;
+
+    /**
+     * Delay used to coalesce the notifications of writes made outside a batch
+     */
+    private static final long NOTIFY_DELAY_MS = 50;
+
+    /**
+     * Largest number of item URIs delivered at once. Past this, observers get one notification
+     * per table, which costs fewer binder calls and makes them re-query just the same.
+     */
+    private static final int MAX_ITEM_NOTIFICATIONS = 64;
+
+    static final String NOTES_LIST_INDEX = "notes_category_id_modified_idx";
+    private static final String LEGACY_NOTES_LIST_INDEX = "notes_category_modified_idx";
+    static final String TODOS_LIST_INDEX = "todos_created_idx";
+    private static final String NOTE_TAGS_TAG_INDEX = "note_tags_tag_idx";
+
+    // The unique name column shared by the categories and tags tables
+    private static final String NAME_COLUMN = NotePad.Categories.COLUMN_NAME_NAME;
 
     private static final UriMatcher sUriMatcher;
 
     private DatabaseHelper mOpenHelper;
 
+    /**
+     * While a batch is running on a thread, the URIs it changed are collected here instead of
+     * being notified one row at a time.
+     */
+    private final ThreadLocal<Map<Uri, Integer>> mPendingNotifications = new ThreadLocal<>();
+
+    /**
+     * Notifications of writes made outside a batch, waiting for the coalescing window to close,
+     * mapped to their change flags
+     */
+    private final Map<Uri, Integer> mScheduledNotifications = new LinkedHashMap<>();
+    private final Runnable mFlushNotifications = this::flushScheduledNotifications;
+    private Handler mNotifyHandler;
+
+    /**
+     * Revision histories are trimmed on their own thread, off the write that made them too long.
+     * Notes already waiting for compaction are not queued twice.
+     */
+    private Handler mCompactHandler;
+    private final Set<Long> mPendingCompactions = new HashSet<>();
+
+    private final RowCache mNoteCache = new RowCache(NotePad.Notes.TABLE_NAME, NOTE_CACHE_COLUMNS,
+            sNotesProjectionMap, NOTE_CACHE_BYTES, NotePad.Notes.COLUMN_NAME_NOTE,
+            NotePad.Notes.COLUMN_NAME_NOTE_LENGTH, NOTE_CACHE_MAX_BODY_CHARS);
+    private final RowCache mTodoCache = new RowCache(NotePad.Todos.TABLE_NAME, TODO_CACHE_COLUMNS,
+            sTodosProjectionMap, TODO_CACHE_BYTES);
+
+    private final SuggestionIndex mSuggestions = new SuggestionIndex();
+    private final TagIndex mTags = new TagIndex();
+
     static {
         sUriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
         sUriMatcher.addURI(NotePad.AUTHORITY, "notes", NOTES);
         sUriMatcher.addURI(NotePad.AUTHORITY, "notes/#", NOTE_ID);
+        sUriMatcher.addURI(NotePad.AUTHORITY, "notes/search", NOTES_SEARCH);
+        sUriMatcher.addURI(NotePad.AUTHORITY, "notes/categories", NOTE_CATEGORIES);
+        sUriMatcher.addURI(NotePad.AUTHORITY, "notes/categories/#", NOTE_CATEGORY_ID);
+        sUriMatcher.addURI(NotePad.AUTHORITY, "notes/suggestions", NOTE_SUGGESTIONS);
+        sUriMatcher.addURI(NotePad.AUTHORITY, "notes/" + NotePad.Tags.PATH_SEGMENT, TAGS);
+        sUriMatcher.addURI(NotePad.AUTHORITY, "notes/#/" + NotePad.Tags.PATH_SEGMENT, NOTE_TAGS);
+        sUriMatcher.addURI(NotePad.AUTHORITY, "notes/#/" + NotePad.Tags.PATH_SEGMENT + "/#", NOTE_TAG_ID);
+        sUriMatcher.addURI(NotePad.AUTHORITY, "notes/#/" + NotePad.Revisions.PATH_SEGMENT, NOTE_REVISIONS);
+        sUriMatcher.addURI(NotePad.AUTHORITY, "notes/#/" + NotePad.Revisions.PATH_SEGMENT + "/#", NOTE_REVISION_ID);
         sUriMatcher.addURI(NotePad.AUTHORITY, "live_folders/notes", LIVE_FOLDER_NOTES);
         sUriMatcher.addURI(NotePad.AUTHORITY, "todos", TODOS);
         sUriMatcher.addURI(NotePad.AUTHORITY, "todos/#", TODO_ID);
@@ -83,7 +264,41 @@ public class NotePadProvider extends ContentProvider implements ContentProvider.
         sNotesProjectionMap.put(NotePad.Notes.COLUMN_NAME_NOTE, NotePad.Notes.COLUMN_NAME_NOTE);
         sNotesProjectionMap.put(NotePad.Notes.COLUMN_NAME_CREATE_DATE, NotePad.Notes.COLUMN_NAME_CREATE_DATE);
         sNotesProjectionMap.put(NotePad.Notes.COLUMN_NAME_MODIFICATION_DATE, NotePad.Notes.COLUMN_NAME_MODIFICATION_DATE);
-        sNotesProjectionMap.put(NotePad.Notes.COLUMN_NAME_CATEGORY, NotePad.Notes.COLUMN_NAME_CATEGORY);
+        sNotesProjectionMap.put(NotePad.Notes.COLUMN_NAME_CATEGORY_ID, NotePad.Notes.COLUMN_NAME_CATEGORY_ID);
+        sNotesProjectionMap.put(NotePad.Notes.COLUMN_NAME_CATEGORY, CATEGORY_NAME + " AS " + NotePad.Notes.COLUMN_NAME_CATEGORY);
+        sNotesProjectionMap.put(NotePad.Notes.COLUMN_NAME_NOTE_LENGTH,
+                "length(" + NotePad.Notes.COLUMN_NAME_NOTE + ") AS " + NotePad.Notes.COLUMN_NAME_NOTE_LENGTH);
+
+        // The search query joins the notes table with its FTS shadow, which also has title and
+        // note columns, so every column has to be qualified with the notes table name.
+        sSearchProjectionMap = new HashMap<>();
+        for (String column : sNotesProjectionMap.keySet()) {
+            sSearchProjectionMap.put(column, NotePad.Notes.TABLE_NAME + "." + column + " AS " + column);
+        }
+        sSearchProjectionMap.put(NotePad.Notes.COLUMN_NAME_NOTE_LENGTH, "length(" + NotePad.Notes.TABLE_NAME + "."
+                + NotePad.Notes.COLUMN_NAME_NOTE + ") AS " + NotePad.Notes.COLUMN_NAME_NOTE_LENGTH);
+        sSearchProjectionMap.put(NotePad.Notes.COLUMN_NAME_CATEGORY, sNotesProjectionMap.get(NotePad.Notes.COLUMN_NAME_CATEGORY));
+
+        // Categories are counted from the notes, grouped by category id; see query().
+        sCategoriesProjectionMap = new HashMap<>();
+        sCategoriesProjectionMap.put(NotePad.Categories._ID,
+                NotePad.Notes.COLUMN_NAME_CATEGORY_ID + " AS " + NotePad.Categories._ID);
+        sCategoriesProjectionMap.put(NotePad.Categories.COLUMN_NAME_NAME,
+                CATEGORY_NAME + " AS " + NotePad.Categories.COLUMN_NAME_NAME);
+        sCategoriesProjectionMap.put(NotePad.Categories.COLUMN_NAME_NOTE_COUNT,
+                "COUNT(*) AS " + NotePad.Categories.COLUMN_NAME_NOTE_COUNT);
+
+        sRevisionsProjectionMap = new HashMap<>();
+        sRevisionsProjectionMap.put(NotePad.Revisions._ID, NotePad.Revisions._ID);
+        sRevisionsProjectionMap.put(NotePad.Revisions.COLUMN_NAME_NOTE_ID, NotePad.Revisions.COLUMN_NAME_NOTE_ID);
+        sRevisionsProjectionMap.put(NotePad.Revisions.COLUMN_NAME_CREATE_DATE, NotePad.Revisions.COLUMN_NAME_CREATE_DATE);
+        sRevisionsProjectionMap.put(NotePad.Revisions.COLUMN_NAME_LENGTH, NotePad.Revisions.COLUMN_NAME_LENGTH);
+
+        // The tags of one note, read through the link table; see query().
+        sNoteTagsProjectionMap = new HashMap<>();
+        sNoteTagsProjectionMap.put(NotePad.Tags._ID,
+                NotePad.Tags.TABLE_NAME + "." + NotePad.Tags._ID + " AS " + NotePad.Tags._ID);
+        sNoteTagsProjectionMap.put(NotePad.Tags.COLUMN_NAME_NAME, NotePad.Tags.COLUMN_NAME_NAME);
 
         sTodosProjectionMap = new HashMap<>();
         sTodosProjectionMap.put(NotePad.Todos._ID, NotePad.Todos._ID);
@@ -98,22 +313,184 @@ public class NotePadProvider extends ContentProvider implements ContentProvider.
         sLiveFolderProjectionMap.put(LiveFolders.NAME, NotePad.Notes.COLUMN_NAME_TITLE + " AS " + LiveFolders.NAME);
     }
 
+    /**
+     * A least-recently-used cache of whole rows keyed by id, bounded by an estimate of the
+     * memory the rows take rather than by their number. Rows larger than an eighth of the budget
+     * are not cached, so a single huge note cannot flush everything else.
+     *
+     * A reader that missed records the generation before going to the database and only stores
+     * its row if no invalidation happened in between, so a row read just before a write can't
+     * be cached after the write invalidated it.
+     *
+     * One text column may be declared sliced: queries for {@code substr(column, start, count)
+     * AS column} are then answered from the cached value, the way SQLite would slice it. Rows
+     * whose sliced column is longer than the given limit are not read into the cache at all.
+     */
+    static final class RowCache extends LruCache<Long, Object[]> {
+        final String mTable;
+        final String[] mColumns;
+        // The SQL reading each of mColumns, from the table's projection map
+        final String[] mProjection;
+        // Indexes in mColumns of the sliced column and of its length, or -1
+        final int mSlicedIndex;
+        private final int mLengthIndex;
+        private final Pattern mSlice;
+        private final int mMaxRowBytes;
+        private long mGeneration;
+
+        RowCache(String table, String[] columns, Map<String, String> projectionMap, int maxBytes) {
+            this(table, columns, projectionMap, maxBytes, null, null, 0);
+        }
+
+        /**
+         * @param slicedColumn   column that may be read in slices, or null
+         * @param lengthColumn   column of {@code columns} holding the length of the sliced one
+         * @param maxSlicedChars longest value of the sliced column a cached row may hold
+         */
+        RowCache(String table, String[] columns, Map<String, String> projectionMap, int maxBytes,
+                 String slicedColumn, String lengthColumn, int maxSlicedChars) {
+            super(maxBytes);
+            mTable = table;
+            mColumns = columns;
+            mProjection = new String[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                mProjection[i] = projectionMap.get(columns[i]);
+            }
+            List<String> names = Arrays.asList(columns);
+            mSlicedIndex = slicedColumn != null ? names.indexOf(slicedColumn) : -1;
+            mLengthIndex = lengthColumn != null ? names.indexOf(lengthColumn) : -1;
+            if (mSlicedIndex >= 0) {
+                // Leaves the value out of rows too long to cache, so a miss never reads it whole.
+                String value = mProjection[mSlicedIndex];
+                mProjection[mSlicedIndex] = "CASE WHEN length(" + value + ") <= " + maxSlicedChars
+                        + " THEN " + value + " END AS " + slicedColumn;
+                mSlice = Pattern.compile(Pattern.quote("substr(" + slicedColumn + ", ")
+                        + "(\\d{1,9}), (\\d{1,9})\\) AS " + Pattern.quote(slicedColumn));
+            } else {
+                mSlice = null;
+            }
+            mMaxRowBytes = maxBytes / 8;
+        }
+
+        /**
+         * Returns the start and count of the characters a projection column reads from the
+         * sliced column, or null if it is not a slice of it.
+         */
+        int[] parseSlice(String column) {
+            Matcher m = mSlice != null ? mSlice.matcher(column) : null;
+            if (m == null || !m.matches()) {
+                return null;
+            }
+            int start = Integer.parseInt(m.group(1));
+            return start >= 1 ? new int[]{start, Integer.parseInt(m.group(2))} : null;
+        }
+
+        /**
+         * Returns true if {@code row}, as read by {@link #mProjection}, holds its sliced column,
+         * that is, the value was short enough to be read.
+         */
+        boolean isComplete(Object[] row) {
+            return mSlicedIndex < 0 || row[mSlicedIndex] != null || row[mLengthIndex] == null;
+        }
+
+        /**
+         * Returns {@code count} characters of {@code text} from the 1-based character
+         * {@code start}, as SQLite's substr() does. Characters are code points, so a surrogate
+         * pair is never split.
+         */
+        static String slice(String text, int start, int count) {
+            if (text == null) {
+                return null;
+            }
+            int length = text.codePointCount(0, text.length());
+            int from = Math.min(start - 1, length);
+            int to = (int) Math.min((long) from + count, length);
+            int begin = text.offsetByCodePoints(0, from);
+            return text.substring(begin, text.offsetByCodePoints(begin, to - from));
+        }
+
+        @Override
+        protected int sizeOf(Long id, Object[] row) {
+            int size = 64;
+            for (Object value : row) {
+                if (value instanceof String) {
+                    size += 40 + 2 * ((String) value).length();
+                } else if (value instanceof byte[]) {
+                    size += 16 + ((byte[]) value).length;
+                } else {
+                    size += 16;
+                }
+            }
+            return size;
+        }
+
+        synchronized long getGeneration() {
+            return mGeneration;
+        }
+
+        synchronized void putIfCurrent(long id, Object[] row, long generation) {
+            if (generation == mGeneration && sizeOf(id, row) <= mMaxRowBytes) {
+                put(id, row);
+            }
+        }
+
+        synchronized void invalidate(long id) {
+            mGeneration++;
+            remove(id);
+        }
+
+        synchronized void invalidateAll() {
+            mGeneration++;
+            evictAll();
+        }
+    }
+
     static class DatabaseHelper extends SQLiteOpenHelper {
         DatabaseHelper(Context context) {
-            super(context, DATABASE_NAME, null, DATABASE_VERSION);
+            this(context, DATABASE_NAME);
+        }
+
+        /**
+         * Opens the database file {@code name} instead of the provider's own, for tests.
+         */
+        DatabaseHelper(Context context, String name) {
+            super(context, name, null, DATABASE_VERSION);
+            // With write-ahead logging the framework keeps a pool of read connections next to
+            // the writer, so list loaders keep reading while an editor save is committing.
+            setWriteAheadLoggingEnabled(true);
+        }
+
+        /**
+         * Tunes the write path for WAL mode. NORMAL only syncs the WAL at checkpoints, which is
+         * still durable against application crashes and loses at most the last transactions on
+         * power loss. The autocheckpoint limit bounds how large the WAL grows between
+         * checkpoints, which keeps reads from having to scan a long log.
+         */
+        @Override
+        public void onConfigure(SQLiteDatabase db) {
+            super.onConfigure(db);
+            db.execSQL("PRAGMA synchronous = NORMAL;");
+            // PRAGMAs that return a row have to be stepped through a cursor to take effect.
+            Cursor c = db.rawQuery("PRAGMA wal_autocheckpoint = " + WAL_AUTOCHECKPOINT_PAGES + ";", null);
+            c.moveToFirst();
+            c.close();
         }
 
         @Override
         public void onCreate(SQLiteDatabase db) {
+            createCategoriesTable(db);
             db.execSQL("CREATE TABLE " + NotePad.Notes.TABLE_NAME + " ("
                     + NotePad.Notes._ID + " INTEGER PRIMARY KEY,"
                     + NotePad.Notes.COLUMN_NAME_TITLE + " TEXT,"
                     + NotePad.Notes.COLUMN_NAME_NOTE + " TEXT,"
                     + NotePad.Notes.COLUMN_NAME_CREATE_DATE + " INTEGER,"
                     + NotePad.Notes.COLUMN_NAME_MODIFICATION_DATE + " INTEGER,"
-                    + NotePad.Notes.COLUMN_NAME_CATEGORY + " TEXT"
+                    + NotePad.Notes.COLUMN_NAME_CATEGORY_ID + " INTEGER REFERENCES "
+                    + NotePad.Categories.TABLE_NAME + "(" + NotePad.Categories._ID + ")"
                     + ");");
 
+            createFtsIndex(db);
+
             db.execSQL("CREATE TABLE " + NotePad.Todos.TABLE_NAME + " ("
                     + NotePad.Todos._ID + " INTEGER PRIMARY KEY,"
                     + NotePad.Todos.COLUMN_NAME_TEXT + " TEXT,"
@@ -122,6 +499,11 @@ public class NotePadProvider extends ContentProvider implements ContentProvider.
                     + NotePad.Todos.COLUMN_NAME_CREATE_DATE + " INTEGER,"
                     + NotePad.Todos.COLUMN_NAME_MODIFICATION_DATE + " INTEGER"
                     + ");");
+
+            createNotesListIndex(db);
+            createTodosListIndex(db);
+            RevisionStore.createTable(db);
+            createTagTables(db);
         }
 
         @Override
@@ -140,28 +522,272 @@ public class NotePadProvider extends ContentProvider implements ContentProvider.
                         + NotePad.Todos.COLUMN_NAME_MODIFICATION_DATE + " INTEGER"
                         + ");");
             }
+            if (oldVersion < 5) {
+                createFtsIndex(db);
+                // Backfill the index from the rows that already exist.
+                db.execSQL("INSERT INTO " + NotePad.NotesFts.TABLE_NAME + "(" + NotePad.NotesFts.TABLE_NAME
+                        + ") VALUES('rebuild');");
+            }
+            if (oldVersion < 6) {
+                // The notes list index is built by the version 10 step, on the category id.
+                createTodosListIndex(db);
+            }
+            if (oldVersion < 7) {
+                // The notes list index gained the id as a tie-breaker for paged queries; it is
+                // rebuilt below.
+                db.execSQL("DROP INDEX IF EXISTS " + LEGACY_NOTES_LIST_INDEX + ";");
+            }
+            if (oldVersion < 8) {
+                // Empty categories are folded into the default one, so that the list can be
+                // grouped in a single pass over rows sorted by category.
+                db.execSQL("UPDATE " + NotePad.Notes.TABLE_NAME + " SET " + NotePad.Notes.COLUMN_NAME_CATEGORY
+                        + " = '" + NotePad.Notes.DEFAULT_CATEGORY + "' WHERE " + NotePad.Notes.COLUMN_NAME_CATEGORY
+                        + " IS NULL OR TRIM(" + NotePad.Notes.COLUMN_NAME_CATEGORY + ") = '';");
+            }
+            if (oldVersion < 9) {
+                RevisionStore.createTable(db);
+            }
+            if (oldVersion < 10) {
+                // Categories move to their own table and notes refer to them by id. The existing
+                // names are added in alphabetical order, so the list keeps its order at first.
+                // SQLite cannot drop the old text column, so it is only emptied.
+                String category = NotePad.Notes.COLUMN_NAME_CATEGORY;
+                createCategoriesTable(db);
+                db.execSQL("INSERT OR IGNORE INTO " + NotePad.Categories.TABLE_NAME + " ("
+                        + NotePad.Categories.COLUMN_NAME_NAME + ") SELECT DISTINCT " + category
+                        + " FROM " + NotePad.Notes.TABLE_NAME + " WHERE " + category + " IS NOT NULL ORDER BY "
+                        + category + ";");
+                db.execSQL("ALTER TABLE " + NotePad.Notes.TABLE_NAME + " ADD COLUMN "
+                        + NotePad.Notes.COLUMN_NAME_CATEGORY_ID + " INTEGER REFERENCES "
+                        + NotePad.Categories.TABLE_NAME + "(" + NotePad.Categories._ID + ");");
+                db.execSQL("UPDATE " + NotePad.Notes.TABLE_NAME + " SET "
+                        + NotePad.Notes.COLUMN_NAME_CATEGORY_ID + " = (SELECT " + NotePad.Categories._ID
+                        + " FROM " + NotePad.Categories.TABLE_NAME + " WHERE " + NotePad.Categories.COLUMN_NAME_NAME
+                        + " = IFNULL(" + NotePad.Notes.TABLE_NAME + "." + category + ", "
+                        + DatabaseUtils.sqlEscapeString(NotePad.Notes.DEFAULT_CATEGORY) + ")), "
+                        + category + " = NULL;");
+                db.execSQL("DROP INDEX IF EXISTS " + LEGACY_NOTES_LIST_INDEX + ";");
+                createNotesListIndex(db);
+            }
+            if (oldVersion < 11) {
+                createTagTables(db);
+            }
+        }
+
+        /**
+         * Creates the categories table holding {@link NotePad.Notes#DEFAULT_CATEGORY}. The unique
+         * constraint indexes the names, which is how a name written to a note finds its id.
+         */
+        private static void createCategoriesTable(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS " + NotePad.Categories.TABLE_NAME + " ("
+                    + NotePad.Categories._ID + " INTEGER PRIMARY KEY,"
+                    + NotePad.Categories.COLUMN_NAME_NAME + " TEXT NOT NULL UNIQUE"
+                    + ");");
+            db.execSQL("INSERT OR IGNORE INTO " + NotePad.Categories.TABLE_NAME + " ("
+                    + NotePad.Categories.COLUMN_NAME_NAME + ") VALUES ("
+                    + DatabaseUtils.sqlEscapeString(NotePad.Notes.DEFAULT_CATEGORY) + ");");
+        }
+
+        /**
+         * Creates the tags table and the table linking notes to tags, plus a trigger dropping
+         * the links of a deleted note. The link table is keyed by note, which serves a note's
+         * tags and the trigger; the second index, keyed by tag, is what the tag index is loaded
+         * from in order. Without a rowid the primary key is the table itself, so the links are
+         * not stored twice.
+         */
+        private static void createTagTables(SQLiteDatabase db) {
+            String noteTags = NotePad.NoteTags.TABLE_NAME;
+            String noteId = NotePad.NoteTags.COLUMN_NAME_NOTE_ID;
+            String tagId = NotePad.NoteTags.COLUMN_NAME_TAG_ID;
+
+            db.execSQL("CREATE TABLE IF NOT EXISTS " + NotePad.Tags.TABLE_NAME + " ("
+                    + NotePad.Tags._ID + " INTEGER PRIMARY KEY,"
+                    + NotePad.Tags.COLUMN_NAME_NAME + " TEXT NOT NULL UNIQUE"
+                    + ");");
+            db.execSQL("CREATE TABLE IF NOT EXISTS " + noteTags + " ("
+                    + noteId + " INTEGER NOT NULL REFERENCES " + NotePad.Notes.TABLE_NAME
+                    + "(" + NotePad.Notes._ID + "),"
+                    + tagId + " INTEGER NOT NULL REFERENCES " + NotePad.Tags.TABLE_NAME
+                    + "(" + NotePad.Tags._ID + "),"
+                    + "PRIMARY KEY (" + noteId + ", " + tagId + ")"
+                    + ") WITHOUT ROWID;");
+            db.execSQL("CREATE INDEX IF NOT EXISTS " + NOTE_TAGS_TAG_INDEX + " ON " + noteTags
+                    + " (" + tagId + ", " + noteId + ");");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS " + noteTags + "_ad AFTER DELETE ON " + NotePad.Notes.TABLE_NAME
+                    + " BEGIN DELETE FROM " + noteTags + " WHERE " + noteId + " = old." + NotePad.Notes._ID + "; END;");
+        }
+
+        /**
+         * Creates covering indexes matching the sort orders used by the notes list
+         * (category_id ASC, modified DESC, _id ASC) and the todo list (created DESC). Each index also
+         * carries the columns those lists read, so SQLite can walk the index in order and never has
+         * to sort in a temp B-tree or go back to the table. The rowid is implicitly part of every
+         * index. The category name is not in the index; it is one primary key lookup per category.
+         */
+        private static void createNotesListIndex(SQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS " + NOTES_LIST_INDEX + " ON " + NotePad.Notes.TABLE_NAME + " ("
+                    + NotePad.Notes.COLUMN_NAME_CATEGORY_ID + " ASC, "
+                    + NotePad.Notes.COLUMN_NAME_MODIFICATION_DATE + " DESC, "
+                    + NotePad.Notes._ID + " ASC, "
+                    + NotePad.Notes.COLUMN_NAME_TITLE
+                    + ");");
+        }
+
+        private static void createTodosListIndex(SQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS " + TODOS_LIST_INDEX + " ON " + NotePad.Todos.TABLE_NAME + " ("
+                    + NotePad.Todos.COLUMN_NAME_CREATE_DATE + " DESC, "
+                    + NotePad.Todos.COLUMN_NAME_IS_COMPLETED + ", "
+                    + NotePad.Todos.COLUMN_NAME_COLOR + ", "
+                    + NotePad.Todos.COLUMN_NAME_TEXT
+                    + ");");
+        }
+
+        /**
+         * Creates an external-content FTS4 table over the title and body of the notes table,
+         * plus the triggers that keep it in sync. FTS4 is used rather than FTS5 because FTS5
+         * is not available on every SQLite build shipped with our minimum API level.
+         */
+        private static void createFtsIndex(SQLiteDatabase db) {
+            String notes = NotePad.Notes.TABLE_NAME;
+            String fts = NotePad.NotesFts.TABLE_NAME;
+            String title = NotePad.Notes.COLUMN_NAME_TITLE;
+            String note = NotePad.Notes.COLUMN_NAME_NOTE;
+
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + fts + " USING fts4("
+                    + "content=\"" + notes + "\", " + title + ", " + note + ");");
+
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS " + fts + "_bd BEFORE DELETE ON " + notes + " BEGIN "
+                    + "DELETE FROM " + fts + " WHERE docid=old.rowid; END;");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS " + fts + "_bu BEFORE UPDATE OF " + title + ", " + note
+                    + " ON " + notes + " BEGIN "
+                    + "DELETE FROM " + fts + " WHERE docid=old.rowid; END;");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS " + fts + "_au AFTER UPDATE OF " + title + ", " + note
+                    + " ON " + notes + " BEGIN "
+                    + "INSERT INTO " + fts + "(docid, " + title + ", " + note + ") "
+                    + "VALUES(new.rowid, new." + title + ", new." + note + "); END;");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS " + fts + "_ai AFTER INSERT ON " + notes + " BEGIN "
+                    + "INSERT INTO " + fts + "(docid, " + title + ", " + note + ") "
+                    + "VALUES(new.rowid, new." + title + ", new." + note + "); END;");
         }
     }
 
     @Override
     public boolean onCreate() {
         mOpenHelper = new DatabaseHelper(getContext());
+        HandlerThread notifyThread = new HandlerThread(TAG);
+        notifyThread.start();
+        mNotifyHandler = new Handler(notifyThread.getLooper());
+        HandlerThread compactThread = new HandlerThread(TAG + "-revisions", Process.THREAD_PRIORITY_BACKGROUND);
+        compactThread.start();
+        mCompactHandler = new Handler(compactThread.getLooper());
         return true;
     }
 
     @Override
     public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        return query(uri, projection, selection, selectionArgs, sortOrder, null);
+    }
+
+    /**
+     * Runs a query that the caller can cancel, e.g. a search superseded by the next keystroke.
+     * Cancelling aborts the SQL statement, including filling the cursor window later on.
+     */
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder,
+                        CancellationSignal cancellationSignal) {
+        if (sUriMatcher.match(uri) == NOTE_REVISION_ID) {
+            return queryRevision(uri, projection);
+        }
+        if (sUriMatcher.match(uri) == NOTE_SUGGESTIONS) {
+            return querySuggestions(uri, projection);
+        }
+        if (sUriMatcher.match(uri) == TAGS) {
+            return queryTags(uri, projection, sortOrder);
+        }
+        if (selection == null && sUriMatcher.match(uri) == NOTE_ID) {
+            Cursor cached = queryThroughCache(mNoteCache, uri, projection);
+            if (cached != null) {
+                return cached;
+            }
+        } else if (selection == null && sUriMatcher.match(uri) == TODO_ID) {
+            Cursor cached = queryThroughCache(mTodoCache, uri, projection);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
         SQLiteQueryBuilder qb = new SQLiteQueryBuilder();
+        String groupBy = null;
+        String limit = null;
+        boolean fullTextSearch = false;
 
         switch (sUriMatcher.match(uri)) {
             case NOTES:
                 qb.setTables(NotePad.Notes.TABLE_NAME);
                 qb.setProjectionMap(sNotesProjectionMap);
+                List<String> where = filterConditions(NotePad.NoteFilter.fromUri(uri), NotePad.Notes.TABLE_NAME);
+                String pageSize = uri.getQueryParameter(NotePad.Notes.QUERY_PARAMETER_LIMIT);
+                if (pageSize != null) {
+                    limit = Integer.toString(Integer.parseInt(pageSize));
+                    // Paged queries always use the list order, which the keyset below relies on.
+                    sortOrder = NotePad.Notes.LIST_SORT_ORDER;
+                    String keyset = keysetCondition(uri);
+                    if (keyset != null) {
+                        where.add(keyset);
+                    }
+                }
+                appendConditions(qb, where);
+                break;
+            case NOTE_CATEGORIES:
+                // Grouping on the leading column of the list index lets SQLite count each
+                // category from the index without touching the table or sorting, and only the
+                // categories that still have notes are listed.
+                qb.setTables(NotePad.Notes.TABLE_NAME);
+                qb.setProjectionMap(sCategoriesProjectionMap);
+                qb.appendWhere(NotePad.Notes.COLUMN_NAME_CATEGORY_ID + " IS NOT NULL");
+                groupBy = NotePad.Notes.COLUMN_NAME_CATEGORY_ID;
                 break;
             case NOTE_ID:
                 qb.setTables(NotePad.Notes.TABLE_NAME);
                 qb.setProjectionMap(sNotesProjectionMap);
-                qb.appendWhere(NotePad.Notes._ID + "=" + uri.getPathSegments().get(NotePad.Notes.NOTE_ID_PATH_POSITION));
+                qb.appendWhere(NotePad.Notes._ID + " = ?");
+                selectionArgs = prependArg(uri.getPathSegments().get(NotePad.Notes.NOTE_ID_PATH_POSITION), selectionArgs);
+                break;
+            case NOTES_SEARCH:
+                // The full-text index finds the matches; category and date are then checked on
+                // each match, which the index cannot be combined with.
+                NotePad.NoteFilter filter = NotePad.NoteFilter.fromUri(uri);
+                List<String> conditions = filterConditions(filter, NotePad.Notes.TABLE_NAME);
+                String within = uri.getQueryParameter(NotePad.Notes.QUERY_PARAMETER_WITHIN);
+                String narrowed = within != null ? narrowedSearchCondition(filter.getText(), within) : null;
+                if (narrowed != null) {
+                    qb.setTables(NotePad.Notes.TABLE_NAME);
+                    qb.setProjectionMap(sNotesProjectionMap);
+                    conditions.add(0, narrowed);
+                } else {
+                    qb.setTables(NotePad.Notes.TABLE_NAME + " JOIN " + NotePad.NotesFts.TABLE_NAME + " ON "
+                            + NotePad.Notes.TABLE_NAME + "." + NotePad.Notes._ID + " = "
+                            + NotePad.NotesFts.TABLE_NAME + ".docid");
+                    qb.setProjectionMap(sSearchProjectionMap);
+                    conditions.add(0, NotePad.NotesFts.TABLE_NAME + " MATCH "
+                            + DatabaseUtils.sqlEscapeString(buildMatchQuery(filter.getText())));
+                    fullTextSearch = true;
+                }
+                appendConditions(qb, conditions);
+                break;
+            case NOTE_TAGS:
+                qb.setTables(NotePad.Tags.TABLE_NAME + " JOIN " + NotePad.NoteTags.TABLE_NAME + " ON "
+                        + NotePad.Tags.TABLE_NAME + "." + NotePad.Tags._ID + " = "
+                        + NotePad.NoteTags.TABLE_NAME + "." + NotePad.NoteTags.COLUMN_NAME_TAG_ID);
+                qb.setProjectionMap(sNoteTagsProjectionMap);
+                qb.appendWhere(NotePad.NoteTags.TABLE_NAME + "." + NotePad.NoteTags.COLUMN_NAME_NOTE_ID + " = ?");
+                selectionArgs = prependArg(uri.getPathSegments().get(NotePad.Notes.NOTE_ID_PATH_POSITION), selectionArgs);
+                break;
+            case NOTE_REVISIONS:
+                qb.setTables(NotePad.Revisions.TABLE_NAME);
+                qb.setProjectionMap(sRevisionsProjectionMap);
+                qb.appendWhere(NotePad.Revisions.COLUMN_NAME_NOTE_ID + " = ?");
+                selectionArgs = prependArg(uri.getPathSegments().get(NotePad.Notes.NOTE_ID_PATH_POSITION), selectionArgs);
                 break;
             case LIVE_FOLDER_NOTES:
                 qb.setTables(NotePad.Notes.TABLE_NAME);
@@ -174,14 +800,40 @@ public class NotePadProvider extends ContentProvider implements ContentProvider.
             case TODO_ID:
                 qb.setTables(NotePad.Todos.TABLE_NAME);
                 qb.setProjectionMap(sTodosProjectionMap);
-                qb.appendWhere(NotePad.Todos._ID + "=" + uri.getPathSegments().get(NotePad.Todos.TODO_ID_PATH_POSITION));
+                qb.appendWhere(NotePad.Todos._ID + " = ?");
+                selectionArgs = prependArg(uri.getPathSegments().get(NotePad.Todos.TODO_ID_PATH_POSITION), selectionArgs);
                 break;
             default:
                 throw new IllegalArgumentException("Unknown URI " + uri);
         }
 
         String orderBy;
-        if (sUriMatcher.match(uri) == TODOS || sUriMatcher.match(uri) == TODO_ID) {
+        if (sUriMatcher.match(uri) == NOTE_CATEGORIES) {
+            if (TextUtils.isEmpty(sortOrder)) {
+                orderBy = NotePad.Categories.DEFAULT_SORT_ORDER;
+            } else {
+                orderBy = sortOrder;
+            }
+        } else if (fullTextSearch) {
+            // Relevance is always the final tie-breaker of a search.
+            if (TextUtils.isEmpty(sortOrder)) {
+                orderBy = SEARCH_SORT_ORDER;
+            } else {
+                orderBy = sortOrder + ", " + SEARCH_SORT_ORDER;
+            }
+        } else if (sUriMatcher.match(uri) == NOTE_TAGS) {
+            if (TextUtils.isEmpty(sortOrder)) {
+                orderBy = NotePad.Tags.DEFAULT_SORT_ORDER;
+            } else {
+                orderBy = sortOrder;
+            }
+        } else if (sUriMatcher.match(uri) == NOTE_REVISIONS) {
+            if (TextUtils.isEmpty(sortOrder)) {
+                orderBy = NotePad.Revisions.DEFAULT_SORT_ORDER;
+            } else {
+                orderBy = sortOrder;
+            }
+        } else if (sUriMatcher.match(uri) == TODOS || sUriMatcher.match(uri) == TODO_ID) {
             if (TextUtils.isEmpty(sortOrder)) {
                 orderBy = NotePad.Todos.DEFAULT_SORT_ORDER;
             } else {
@@ -196,19 +848,328 @@ public class NotePadProvider extends ContentProvider implements ContentProvider.
         }
 
         SQLiteDatabase db = mOpenHelper.getReadableDatabase();
-        Cursor c = qb.query(db, projection, selection, selectionArgs, null, null, orderBy);
-        c.setNotificationUri(getContext().getContentResolver(), uri);
+        Cursor c = qb.query(db, projection, selection, selectionArgs, groupBy, null, orderBy, limit,
+                cancellationSignal);
+        if (sUriMatcher.match(uri) == NOTES_SEARCH || sUriMatcher.match(uri) == NOTE_CATEGORIES) {
+            // Writes notify on the notes URIs, which are not ancestors of these derived URIs.
+            c.setNotificationUri(getContext().getContentResolver(), NotePad.Notes.CONTENT_URI);
+        } else {
+            c.setNotificationUri(getContext().getContentResolver(), uri);
+        }
         return c;
     }
 
+    /**
+     * Answers a typeahead query from the in-memory suggestion index.
+     */
+    private Cursor querySuggestions(Uri uri, String[] projection) {
+        String limit = uri.getQueryParameter(NotePad.Suggestions.QUERY_PARAMETER_LIMIT);
+        int kind = NotePad.Suggestions.KIND_CATEGORY.equals(uri.getQueryParameter(NotePad.Suggestions.QUERY_PARAMETER_KIND))
+                ? SuggestionIndex.KIND_CATEGORY : SuggestionIndex.KIND_TITLE;
+        MatrixCursor result = mSuggestions.query(mOpenHelper.getReadableDatabase(), projection, kind,
+                uri.getQueryParameter(NotePad.Suggestions.QUERY_PARAMETER_PREFIX),
+                limit != null ? Integer.parseInt(limit) : NotePad.Suggestions.DEFAULT_LIMIT);
+        result.setNotificationUri(getContext().getContentResolver(), NotePad.Notes.CONTENT_URI);
+        return result;
+    }
+
+    /**
+     * Lists the tags that have notes, with their number of notes counted from the tag index.
+     * Tags given in the URI as a {@link NotePad.NoteFilter} limit the counts to the notes that
+     * tag filter selects, which takes one bitmap intersection per tag rather than a join.
+     * Tags without any (selected) notes are left out. The sort order applies to the tags table,
+     * so it can name the id and name columns only.
+     */
+    private Cursor queryTags(Uri uri, String[] projection, String sortOrder) {
+        if (projection == null) {
+            projection = new String[]{
+                    NotePad.Tags._ID,
+                    NotePad.Tags.COLUMN_NAME_NAME,
+                    NotePad.Tags.COLUMN_NAME_NOTE_COUNT
+            };
+        }
+
+        SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+        NotePad.NoteFilter filter = NotePad.NoteFilter.fromUri(uri);
+        NoteBitmap within = filter.hasTags() ? mTags.select(db, filter.getTagIds(), filter.isMatchAllTags()) : null;
+        MatrixCursor result = new MatrixCursor(projection);
+        result.setNotificationUri(getContext().getContentResolver(), NotePad.Notes.CONTENT_URI);
+
+        Cursor c = db.query(NotePad.Tags.TABLE_NAME, new String[]{NotePad.Tags._ID, NotePad.Tags.COLUMN_NAME_NAME},
+                null, null, null, null, TextUtils.isEmpty(sortOrder) ? NotePad.Tags.DEFAULT_SORT_ORDER : sortOrder);
+        try {
+            while (c.moveToNext()) {
+                long id = c.getLong(0);
+                int count = mTags.count(db, id, within);
+                if (count == 0) {
+                    continue;
+                }
+                Object[] row = new Object[projection.length];
+                for (int i = 0; i < projection.length; i++) {
+                    switch (projection[i]) {
+                        case NotePad.Tags._ID:
+                            row[i] = id;
+                            break;
+                        case NotePad.Tags.COLUMN_NAME_NAME:
+                            row[i] = c.getString(1);
+                            break;
+                        case NotePad.Tags.COLUMN_NAME_NOTE_COUNT:
+                            row[i] = count;
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Invalid column " + projection[i]);
+                    }
+                }
+                result.addRow(row);
+            }
+        } finally {
+            c.close();
+        }
+        return result;
+    }
+
+    /**
+     * Answers a query for one revision, whose body has to be rebuilt from the stored snapshot
+     * and deltas rather than read from a column.
+     */
+    private Cursor queryRevision(Uri uri, String[] projection) {
+        List<String> segments = uri.getPathSegments();
+        long noteId = Long.parseLong(segments.get(NotePad.Notes.NOTE_ID_PATH_POSITION));
+        long revisionId = Long.parseLong(segments.get(NotePad.Revisions.REVISION_ID_PATH_POSITION));
+        if (projection == null) {
+            projection = new String[]{
+                    NotePad.Revisions._ID,
+                    NotePad.Revisions.COLUMN_NAME_NOTE_ID,
+                    NotePad.Revisions.COLUMN_NAME_CREATE_DATE,
+                    NotePad.Revisions.COLUMN_NAME_LENGTH,
+                    NotePad.Revisions.COLUMN_NAME_NOTE
+            };
+        }
+
+        SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+        MatrixCursor result = new MatrixCursor(projection, 1);
+        result.setNotificationUri(getContext().getContentResolver(), uri);
+        long created;
+        Cursor c = db.query(NotePad.Revisions.TABLE_NAME,
+                new String[]{NotePad.Revisions.COLUMN_NAME_CREATE_DATE},
+                NotePad.Revisions._ID + " = ? AND " + NotePad.Revisions.COLUMN_NAME_NOTE_ID + " = ?",
+                new String[]{Long.toString(revisionId), Long.toString(noteId)}, null, null, null);
+        try {
+            if (!c.moveToFirst()) {
+                return result;
+            }
+            created = c.getLong(0);
+        } finally {
+            c.close();
+        }
+
+        // Null if compaction dropped the revision in the meantime
+        String note = RevisionStore.rebuild(db, noteId, revisionId);
+        if (note == null) {
+            return result;
+        }
+        Object[] row = new Object[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            switch (projection[i]) {
+                case NotePad.Revisions._ID:
+                    row[i] = revisionId;
+                    break;
+                case NotePad.Revisions.COLUMN_NAME_NOTE_ID:
+                    row[i] = noteId;
+                    break;
+                case NotePad.Revisions.COLUMN_NAME_CREATE_DATE:
+                    row[i] = created;
+                    break;
+                case NotePad.Revisions.COLUMN_NAME_LENGTH:
+                    row[i] = note.length();
+                    break;
+                case NotePad.Revisions.COLUMN_NAME_NOTE:
+                    row[i] = note;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid column " + projection[i]);
+            }
+        }
+        result.addRow(row);
+        return result;
+    }
+
+    /**
+     * Returns the conditions on the notes table that the category and modification date range
+     * of {@code filter} translate to. Together with the list order they form a prefix of the
+     * notes list index, so a filtered list is still read from the index in order.
+     *
+     * Tags are resolved to note ids by the tag index up front, instead of joining the link table
+     * once per tag; see {@link TagIndex#condition}.
+     */
+    private List<String> filterConditions(NotePad.NoteFilter filter, String table) {
+        List<String> conditions = new ArrayList<>();
+        if (filter.getCategoryId() != NotePad.NoteFilter.ALL_CATEGORIES) {
+            conditions.add(table + "." + NotePad.Notes.COLUMN_NAME_CATEGORY_ID + " = " + filter.getCategoryId());
+        }
+        if (filter.getModifiedFrom() != NotePad.NoteFilter.UNBOUNDED) {
+            conditions.add(table + "." + NotePad.Notes.COLUMN_NAME_MODIFICATION_DATE + " >= "
+                    + filter.getModifiedFrom());
+        }
+        if (filter.getModifiedTo() != NotePad.NoteFilter.UNBOUNDED) {
+            conditions.add(table + "." + NotePad.Notes.COLUMN_NAME_MODIFICATION_DATE + " < "
+                    + filter.getModifiedTo());
+        }
+        if (filter.hasTags()) {
+            NoteBitmap tagged = mTags.select(mOpenHelper.getReadableDatabase(), filter.getTagIds(),
+                    filter.isMatchAllTags());
+            conditions.add(TagIndex.condition(tagged, filter.getTagIds(), filter.isMatchAllTags(),
+                    table + "." + NotePad.Notes._ID));
+        }
+        return conditions;
+    }
+
+    private static void appendConditions(SQLiteQueryBuilder qb, List<String> conditions) {
+        for (int i = 0; i < conditions.size(); i++) {
+            qb.appendWhere((i > 0 ? " AND (" : "(") + conditions.get(i) + ")");
+        }
+    }
+
+    /**
+     * Returns the condition restricting a paged notes query to the rows sorting after the key
+     * passed in the URI, or null if there is none. The leading range on category id lets SQLite
+     * seek into the list index instead of skipping over every row of the previous pages.
+     */
+    private static String keysetCondition(Uri uri) {
+        String afterId = uri.getQueryParameter(NotePad.Notes.QUERY_PARAMETER_AFTER_ID);
+        if (afterId == null) {
+            return null;
+        }
+        long id = Long.parseLong(afterId);
+        long modified = Long.parseLong(uri.getQueryParameter(NotePad.Notes.QUERY_PARAMETER_AFTER_MODIFIED));
+        long categoryId = Long.parseLong(uri.getQueryParameter(NotePad.Notes.QUERY_PARAMETER_AFTER_CATEGORY_ID));
+
+        return NotePad.Notes.COLUMN_NAME_CATEGORY_ID + " >= " + categoryId
+                + " AND (" + NotePad.Notes.COLUMN_NAME_CATEGORY_ID + " > " + categoryId
+                + " OR " + NotePad.Notes.COLUMN_NAME_MODIFICATION_DATE + " < " + modified
+                + " OR (" + NotePad.Notes.COLUMN_NAME_MODIFICATION_DATE + " = " + modified
+                + " AND " + NotePad.Notes._ID + " > " + id + "))";
+    }
+
+    /**
+     * Answers a search narrowed to the notes listed in {@code within} without the full-text
+     * index, which could only be used by running the whole MATCH once per listed note. Instead
+     * each term is checked against the title and body of just those notes, so the cost follows
+     * the number of listed notes rather than the size of the notebook.
+     *
+     * The check mirrors the FTS4 simple tokenizer: a term matches where it starts a token, and
+     * tokens are runs of ASCII letters and digits or non-ASCII characters, compared with ASCII
+     * case folded. Terms this cannot reproduce exactly, such as ones containing punctuation that
+     * FTS turns into a phrase, are left to the full-text query.
+     *
+     * @return the condition on the notes table, or null if the search has to go through the
+     * full-text index after all
+     */
+    private static String narrowedSearchCondition(String search, String within) {
+        if (search == null) {
+            return null;
+        }
+        List<String> terms = new ArrayList<>();
+        for (String term : search.replace('"', ' ').trim().split("\\s+")) {
+            if (term.isEmpty()) {
+                continue;
+            }
+            for (int i = 0; i < term.length(); i++) {
+                char ch = term.charAt(i);
+                boolean tokenChar = ch < 0x80
+                        ? (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9')
+                        : Character.toLowerCase(ch) == ch && Character.toUpperCase(ch) == ch;
+                if (!tokenChar) {
+                    return null;
+                }
+            }
+            terms.add(term.toLowerCase(Locale.ROOT));
+        }
+        if (terms.isEmpty()) {
+            return null;
+        }
+
+        // Parsed and rebuilt so that only numbers end up in the SQL.
+        StringBuilder ids = new StringBuilder();
+        for (String id : within.split(",")) {
+            if (id.isEmpty()) {
+                continue;
+            }
+            if (ids.length() > 0) {
+                ids.append(',');
+            }
+            ids.append(Long.parseLong(id));
+        }
+
+        StringBuilder condition = new StringBuilder();
+        condition.append(NotePad.Notes._ID).append(" IN (").append(ids).append(')');
+        for (String term : terms) {
+            condition.append(" AND (").append(tokenPrefixMatch(NotePad.Notes.COLUMN_NAME_TITLE, term))
+                    .append(" OR ").append(tokenPrefixMatch(NotePad.Notes.COLUMN_NAME_NOTE, term)).append(')');
+        }
+        return condition.toString();
+    }
+
+    /**
+     * Returns a check that some token of {@code column} starts with {@code term}, which must be
+     * lower case and free of GLOB wildcards. A token starts either at the beginning of the text
+     * or after a character that cannot be part of a token.
+     */
+    private static String tokenPrefixMatch(String column, String term) {
+        return "(lower(" + column + ") GLOB " + DatabaseUtils.sqlEscapeString(term + "*")
+                + " OR lower(" + column + ") GLOB "
+                + DatabaseUtils.sqlEscapeString("*[^a-z0-9\u0080-\uDBFF\uDFFF]" + term + "*") + ")";
+    }
+
+    /**
+     * Turns free text typed by the user into an FTS MATCH expression. Every whitespace
+     * separated word becomes a quoted prefix term, and the terms are implicitly ANDed, so
+     * FTS operators and quotes in the input cannot produce a malformed query.
+     */
+    static String buildMatchQuery(String text) {
+        StringBuilder match = new StringBuilder();
+        if (text != null) {
+            for (String term : text.replace('"', ' ').trim().split("\\s+")) {
+                if (term.isEmpty()) {
+                    continue;
+                }
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append('"').append(term).append("*\"");
+            }
+        }
+        if (match.length() == 0) {
+            // An empty MATCH is an error in SQLite; match nothing instead.
+            match.append("\"\"");
+        }
+        return match.toString();
+    }
+
     @Override
     public String getType(Uri uri) {
         switch (sUriMatcher.match(uri)) {
             case NOTES:
+            case NOTES_SEARCH:
             case LIVE_FOLDER_NOTES:
                 return NotePad.Notes.CONTENT_TYPE;
             case NOTE_ID:
                 return NotePad.Notes.CONTENT_ITEM_TYPE;
+            case NOTE_CATEGORIES:
+                return NotePad.Categories.CONTENT_TYPE;
+            case NOTE_CATEGORY_ID:
+                return NotePad.Categories.CONTENT_ITEM_TYPE;
+            case NOTE_SUGGESTIONS:
+                return NotePad.Suggestions.CONTENT_TYPE;
+            case TAGS:
+            case NOTE_TAGS:
+                return NotePad.Tags.CONTENT_TYPE;
+            case NOTE_TAG_ID:
+                return NotePad.Tags.CONTENT_ITEM_TYPE;
+            case NOTE_REVISIONS:
+                return NotePad.Revisions.CONTENT_TYPE;
+            case NOTE_REVISION_ID:
+                return NotePad.Revisions.CONTENT_ITEM_TYPE;
             case TODOS:
                 return NotePad.Todos.CONTENT_TYPE;
             case TODO_ID:
@@ -220,23 +1181,212 @@ public class NotePadProvider extends ContentProvider implements ContentProvider.
 
     @Override
     public String[] getStreamTypes(Uri uri, String mimeTypeFilter) {
-        if (sUriMatcher.match(uri) == NOTE_ID) {
-            return super.getStreamTypes(uri, mimeTypeFilter);
+        switch (sUriMatcher.match(uri)) {
+            case NOTE_ID:
+                return filterMimeTypes(NOTE_STREAM_TYPES, mimeTypeFilter);
+            case NOTES:
+                return filterMimeTypes(NOTES_STREAM_TYPES, mimeTypeFilter);
+            default:
+                return null;
+        }
+    }
+
+    private static String[] filterMimeTypes(String[] types, String mimeTypeFilter) {
+        ArrayList<String> matches = new ArrayList<>();
+        for (String type : types) {
+            if (ClipDescription.compareMimeTypes(type, mimeTypeFilter)) {
+                matches.add(type);
+            }
         }
-        return null;
+        return matches.isEmpty() ? null : matches.toArray(new String[0]);
     }
 
+    /**
+     * Opens a single note as plain text, or the whole notebook as plain text or NDJSON. The data
+     * is produced on a background thread by {@link #writeDataToPipe} and read by the caller
+     * from the other end of a pipe, so nothing larger than one chunk of a note is held in
+     * memory.
+     */
     @Override
     public AssetFileDescriptor openTypedAssetFile(Uri uri, String mimeTypeFilter, Bundle opts) throws FileNotFoundException {
-        if (sUriMatcher.match(uri) == NOTE_ID) {
+        String[] mimeTypes = getStreamTypes(uri, mimeTypeFilter);
+        if (mimeTypes == null) {
             return super.openTypedAssetFile(uri, mimeTypeFilter, opts);
         }
-        return null;
+
+        Cursor c;
+        if (sUriMatcher.match(uri) == NOTE_ID) {
+            // Only the title and the body length are read up front; the body is streamed in chunks.
+            c = mOpenHelper.getReadableDatabase().query(NotePad.Notes.TABLE_NAME, STREAM_NOTE_PROJECTION,
+                    NotePad.Notes._ID + " = ?",
+                    new String[]{uri.getPathSegments().get(NotePad.Notes.NOTE_ID_PATH_POSITION)},
+                    null, null, null);
+            if (!c.moveToFirst()) {
+                c.close();
+                throw new FileNotFoundException("Unable to query " + uri);
+            }
+        } else {
+            c = mOpenHelper.getReadableDatabase().query(NotePad.Notes.TABLE_NAME, STREAM_NOTES_PROJECTION,
+                    null, null, null, null, NotePad.Notes.LIST_SORT_ORDER);
+        }
+        return new AssetFileDescriptor(openPipeHelper(uri, mimeTypes[0], opts, c, this), 0,
+                AssetFileDescriptor.UNKNOWN_LENGTH);
     }
 
     @Override
     public void writeDataToPipe(ParcelFileDescriptor output, Uri uri, String mimeType, Bundle opts, Cursor c) {
-        // Default implementation
+        FileOutputStream fout = new FileOutputStream(output.getFileDescriptor());
+        PrintWriter pw = null;
+        try {
+            pw = new PrintWriter(new BufferedWriter(new OutputStreamWriter(fout, "UTF-8"), STREAM_BUFFER_SIZE));
+            if (sUriMatcher.match(uri) == NOTE_ID) {
+                writeNoteText(pw, uri, c);
+            } else if (NotePad.Notes.EXPORT_TYPE_NDJSON.equals(mimeType)) {
+                writeNotesNdjson(pw, c);
+            } else {
+                writeNotesText(pw, c);
+            }
+        } catch (UnsupportedEncodingException e) {
+            Log.w(TAG, "Ooops", e);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to stream " + uri, e);
+        } finally {
+            c.close();
+            if (pw != null) {
+                pw.flush();
+            }
+            try {
+                fout.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    /**
+     * Writes the title and body of one note. The body is read from the database in chunks of
+     * {@link #STREAM_CHUNK_CHARS} characters, so even a note too large for a CursorWindow can
+     * be shared. A save landing while the note is streamed may show up in the later chunks.
+     */
+    private void writeNoteText(PrintWriter pw, Uri uri, Cursor c) {
+        String noteId = uri.getPathSegments().get(NotePad.Notes.NOTE_ID_PATH_POSITION);
+        long length = c.getLong(1);
+
+        pw.print(c.getString(0));
+        pw.print("\n\n");
+
+        SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+        for (long start = 1; start <= length && !pw.checkError(); start += STREAM_CHUNK_CHARS) {
+            String chunk = readBodyChunk(db, noteId, start);
+            if (chunk == null) {
+                break;
+            }
+            pw.print(chunk);
+        }
+    }
+
+    private void writeNotesText(PrintWriter pw, Cursor c) {
+        while (c.moveToNext() && !pw.checkError()) {
+            pw.print(c.getString(1));
+            pw.print("\n\n");
+            writeNotesBody(pw, c, false);
+            pw.print("\n\n");
+        }
+    }
+
+    private void writeNotesNdjson(PrintWriter pw, Cursor c) throws IOException {
+        while (c.moveToNext() && !pw.checkError()) {
+            // JsonWriter writes straight through to pw; one writer per line since NDJSON is a
+            // sequence of top-level values. The body comes last and is written by hand, chunk
+            // by chunk, as JsonWriter can only write a string value in one piece.
+            JsonWriter json = new JsonWriter(pw);
+            json.beginObject()
+                    .name(NotePad.Notes._ID).value(c.getLong(0))
+                    .name(NotePad.Notes.COLUMN_NAME_TITLE).value(c.getString(1))
+                    .name(NotePad.Notes.COLUMN_NAME_CATEGORY).value(c.getString(2))
+                    .name(NotePad.Notes.COLUMN_NAME_CREATE_DATE).value(c.getLong(3))
+                    .name(NotePad.Notes.COLUMN_NAME_MODIFICATION_DATE).value(c.getLong(4));
+            pw.print(",\"" + NotePad.Notes.COLUMN_NAME_NOTE + "\":\"");
+            writeNotesBody(pw, c, true);
+            pw.print("\"}\n");
+        }
+    }
+
+    /**
+     * Writes the body of the current row of a collection export. The first chunk comes with
+     * the row and the rest is read like {@link #writeNoteText} does, so no single note has to
+     * fit in a CursorWindow. With {@code json} set the text is escaped for a JSON string.
+     */
+    private void writeNotesBody(PrintWriter pw, Cursor c, boolean json) {
+        String noteId = c.getString(0);
+        long length = c.getLong(5);
+        String chunk = c.getString(6);
+        SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+        for (long start = 1 + STREAM_CHUNK_CHARS; chunk != null; start += STREAM_CHUNK_CHARS) {
+            if (json) {
+                writeJsonChars(pw, chunk);
+            } else {
+                pw.print(chunk);
+            }
+            chunk = start <= length && !pw.checkError() ? readBodyChunk(db, noteId, start) : null;
+        }
+    }
+
+    /**
+     * Returns {@link #STREAM_CHUNK_CHARS} characters of the body of note {@code noteId} from
+     * the 1-based position {@code start} on, or null if the note is gone.
+     */
+    private static String readBodyChunk(SQLiteDatabase db, String noteId, long start) {
+        Cursor chunk = db.rawQuery("SELECT substr(" + NotePad.Notes.COLUMN_NAME_NOTE + ", ?, ?) FROM "
+                        + NotePad.Notes.TABLE_NAME + " WHERE " + NotePad.Notes._ID + " = ?",
+                new String[]{String.valueOf(start), String.valueOf(STREAM_CHUNK_CHARS), noteId});
+        try {
+            return chunk.moveToFirst() ? chunk.getString(0) : null;
+        } finally {
+            chunk.close();
+        }
+    }
+
+    /**
+     * Writes {@code text} escaped as the inside of a JSON string, the way JsonWriter escapes
+     * string values.
+     */
+    private static void writeJsonChars(PrintWriter pw, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            switch (ch) {
+                case '"':
+                case '\\':
+                    pw.print('\\');
+                    pw.print(ch);
+                    break;
+                case '\n':
+                    pw.print("\\n");
+                    break;
+                case '\r':
+                    pw.print("\\r");
+                    break;
+                case '\t':
+                    pw.print("\\t");
+                    break;
+                case '\b':
+                    pw.print("\\b");
+                    break;
+                case '\f':
+                    pw.print("\\f");
+                    break;
+                case '\u2028':
+                case '\u2029':
+                    pw.print(String.format(Locale.ROOT, "\\u%04x", (int) ch));
+                    break;
+                default:
+                    if (ch < 0x20) {
+                        pw.print(String.format(Locale.ROOT, "\\u%04x", (int) ch));
+                    } else {
+                        pw.print(ch);
+                    }
+                    break;
+            }
+        }
     }
 
     @Override
@@ -269,9 +1419,7 @@ public class NotePadProvider extends ContentProvider implements ContentProvider.
                 if (!values.containsKey(NotePad.Notes.COLUMN_NAME_NOTE)) {
                     values.put(NotePad.Notes.COLUMN_NAME_NOTE, "");
                 }
-                if (!values.containsKey(NotePad.Notes.COLUMN_NAME_CATEGORY)) {
-                    values.put(NotePad.Notes.COLUMN_NAME_CATEGORY, "Uncategorized");
-                }
+                normalizeCategory(db, values, true);
 
                 rowId = db.insert(NotePad.Notes.TABLE_NAME, NotePad.Notes.COLUMN_NAME_NOTE, values);
                 if (rowId > 0) {
@@ -296,18 +1444,53 @@ public class NotePadProvider extends ContentProvider implements ContentProvider.
                     noteUri = ContentUris.withAppendedId(NotePad.Todos.CONTENT_ID_URI_BASE, rowId);
                 }
                 break;
+            case NOTE_TAGS:
+                long taggedId = Long.parseLong(uri.getPathSegments().get(NotePad.Notes.NOTE_ID_PATH_POSITION));
+                rowId = addTag(db, taggedId, values);
+                if (rowId > 0) {
+                    noteUri = NotePad.Tags.buildNoteTagUri(taggedId, rowId);
+                }
+                break;
             default:
                 throw new IllegalArgumentException("Unknown URI " + uri);
         }
 
         if (rowId > 0) {
-            getContext().getContentResolver().notifyChange(noteUri, null);
+            if (mPendingNotifications.get() == null) {
+                updateIndexes(noteUri);
+            }
+            notifyChange(noteUri, ContentResolver.NOTIFY_INSERT);
             return noteUri;
         }
 
         throw new SQLException("Failed to insert row into " + uri);
     }
 
+    /**
+     * Tags note {@code noteId} with the tag named in {@code values}, adding the tag if there is
+     * none. Tagging a note again with the same tag changes nothing.
+     *
+     * @return the id of the tag, or -1 if the note does not exist
+     */
+    private long addTag(SQLiteDatabase db, long noteId, ContentValues values) {
+        String name = values.getAsString(NotePad.Tags.COLUMN_NAME_NAME);
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Missing tag name");
+        }
+        String id = Long.toString(noteId);
+        if (DatabaseUtils.queryNumEntries(db, NotePad.Notes.TABLE_NAME, NotePad.Notes._ID + " = ?",
+                new String[]{id}) == 0) {
+            return -1;
+        }
+
+        long tagId = getOrCreateNamed(db, NotePad.Tags.TABLE_NAME, name.trim());
+        ContentValues link = new ContentValues();
+        link.put(NotePad.NoteTags.COLUMN_NAME_NOTE_ID, noteId);
+        link.put(NotePad.NoteTags.COLUMN_NAME_TAG_ID, tagId);
+        db.insertWithOnConflict(NotePad.NoteTags.TABLE_NAME, null, link, SQLiteDatabase.CONFLICT_IGNORE);
+        return tagId;
+    }
+
     @Override
     public int delete(Uri uri, String where, String[] whereArgs) {
         SQLiteDatabase db = mOpenHelper.getWritableDatabase();
@@ -319,27 +1502,52 @@ public class NotePadProvider extends ContentProvider implements ContentProvider.
                 count = db.delete(NotePad.Notes.TABLE_NAME, where, whereArgs);
                 break;
             case NOTE_ID:
-                finalWhere = NotePad.Notes._ID + " = " + uri.getPathSegments().get(NotePad.Notes.NOTE_ID_PATH_POSITION);
-                if (where != null) {
-                    finalWhere = finalWhere + " AND " + where;
+                String noteId = uri.getPathSegments().get(NotePad.Notes.NOTE_ID_PATH_POSITION);
+                if (where == null) {
+                    count = deleteById(db, NotePad.Notes.TABLE_NAME, noteId);
+                } else {
+                    finalWhere = NotePad.Notes._ID + " = ? AND (" + where + ")";
+                    count = db.delete(NotePad.Notes.TABLE_NAME, finalWhere, prependArg(noteId, whereArgs));
                 }
-                count = db.delete(NotePad.Notes.TABLE_NAME, finalWhere, whereArgs);
                 break;
             case TODOS:
                 count = db.delete(NotePad.Todos.TABLE_NAME, where, whereArgs);
                 break;
             case TODO_ID:
-                finalWhere = NotePad.Todos._ID + " = " + uri.getPathSegments().get(NotePad.Todos.TODO_ID_PATH_POSITION);
+                String todoId = uri.getPathSegments().get(NotePad.Todos.TODO_ID_PATH_POSITION);
+                if (where == null) {
+                    count = deleteById(db, NotePad.Todos.TABLE_NAME, todoId);
+                } else {
+                    finalWhere = NotePad.Todos._ID + " = ? AND (" + where + ")";
+                    count = db.delete(NotePad.Todos.TABLE_NAME, finalWhere, prependArg(todoId, whereArgs));
+                }
+                break;
+            case NOTE_TAGS:
+                finalWhere = NotePad.NoteTags.COLUMN_NAME_NOTE_ID + " = ?";
                 if (where != null) {
-                    finalWhere = finalWhere + " AND " + where;
+                    finalWhere += " AND (" + where + ")";
                 }
-                count = db.delete(NotePad.Todos.TABLE_NAME, finalWhere, whereArgs);
+                count = db.delete(NotePad.NoteTags.TABLE_NAME, finalWhere,
+                        prependArg(uri.getPathSegments().get(NotePad.Notes.NOTE_ID_PATH_POSITION), whereArgs));
+                break;
+            case NOTE_TAG_ID:
+                List<String> segments = uri.getPathSegments();
+                count = db.delete(NotePad.NoteTags.TABLE_NAME, NotePad.NoteTags.COLUMN_NAME_NOTE_ID + " = ? AND "
+                        + NotePad.NoteTags.COLUMN_NAME_TAG_ID + " = ?", new String[]{
+                        segments.get(NotePad.Notes.NOTE_ID_PATH_POSITION),
+                        segments.get(NotePad.Tags.TAG_ID_PATH_POSITION)});
                 break;
             default:
                 throw new IllegalArgumentException("Unknown URI " + uri);
         }
 
-        getContext().getContentResolver().notifyChange(uri, null);
+        if (count > 0) {
+            invalidateCache(uri);
+            if (mPendingNotifications.get() == null) {
+                updateIndexes(uri);
+            }
+            notifyChange(uri, ContentResolver.NOTIFY_DELETE);
+        }
         return count;
     }
 
@@ -349,37 +1557,582 @@ public class NotePadProvider extends ContentProvider implements ContentProvider.
         int count;
         String finalWhere;
 
+        int match = sUriMatcher.match(uri);
+        if ((match == NOTES || match == NOTE_ID) && values != null
+                && (values.containsKey(NotePad.Notes.COLUMN_NAME_CATEGORY)
+                || values.containsKey(NotePad.Notes.COLUMN_NAME_CATEGORY_ID))) {
+            values = new ContentValues(values);
+            normalizeCategory(db, values, false);
+        }
+
         switch (sUriMatcher.match(uri)) {
             case NOTES:
                 count = db.update(NotePad.Notes.TABLE_NAME, values, where, whereArgs);
                 break;
             case NOTE_ID:
                 String noteId = uri.getPathSegments().get(NotePad.Notes.NOTE_ID_PATH_POSITION);
-                finalWhere = NotePad.Notes._ID + " = " + noteId;
-                if (where != null) {
-                    finalWhere = finalWhere + " AND " + where;
+                // A new body is recorded in the revision history in the same transaction.
+                boolean newBody = values != null && values.containsKey(NotePad.Notes.COLUMN_NAME_NOTE);
+                int revisions = -1;
+                if (newBody) {
+                    db.beginTransaction();
+                }
+                try {
+                    Cursor old = newBody ? db.query(NotePad.Notes.TABLE_NAME, new String[]{
+                                    NotePad.Notes.COLUMN_NAME_NOTE, NotePad.Notes.COLUMN_NAME_MODIFICATION_DATE},
+                            NotePad.Notes._ID + " = ?", new String[]{noteId}, null, null, null) : null;
+                    String oldBody = null;
+                    long oldModified = 0;
+                    if (old != null) {
+                        try {
+                            if (old.moveToFirst()) {
+                                oldBody = old.getString(0);
+                                oldModified = old.getLong(1);
+                            }
+                        } finally {
+                            old.close();
+                        }
+                    }
+
+                    if (where == null) {
+                        count = updateById(db, NotePad.Notes.TABLE_NAME, noteId, values);
+                    } else {
+                        finalWhere = NotePad.Notes._ID + " = ? AND (" + where + ")";
+                        count = db.update(NotePad.Notes.TABLE_NAME, values, finalWhere, prependArg(noteId, whereArgs));
+                    }
+
+                    if (newBody && count > 0) {
+                        Long modified = values.getAsLong(NotePad.Notes.COLUMN_NAME_MODIFICATION_DATE);
+                        revisions = RevisionStore.record(db, Long.parseLong(noteId), oldBody, oldModified,
+                                values.getAsString(NotePad.Notes.COLUMN_NAME_NOTE),
+                                modified != null ? modified : System.currentTimeMillis());
+                    }
+                    if (newBody) {
+                        db.setTransactionSuccessful();
+                    }
+                } finally {
+                    if (newBody) {
+                        db.endTransaction();
+                    }
+                }
+                if (RevisionStore.needsCompaction(revisions)) {
+                    scheduleCompaction(Long.parseLong(noteId));
                 }
-                count = db.update(NotePad.Notes.TABLE_NAME, values, finalWhere, whereArgs);
                 break;
             case TODOS:
                 count = db.update(NotePad.Todos.TABLE_NAME, values, where, whereArgs);
                 break;
             case TODO_ID:
                 String todoId = uri.getPathSegments().get(NotePad.Todos.TODO_ID_PATH_POSITION);
-                finalWhere = NotePad.Todos._ID + " = " + todoId;
-                if (where != null) {
-                    finalWhere = finalWhere + " AND " + where;
+                if (where == null) {
+                    count = updateById(db, NotePad.Todos.TABLE_NAME, todoId, values);
+                } else {
+                    finalWhere = NotePad.Todos._ID + " = ? AND (" + where + ")";
+                    count = db.update(NotePad.Todos.TABLE_NAME, values, finalWhere, prependArg(todoId, whereArgs));
                 }
-                count = db.update(NotePad.Todos.TABLE_NAME, values, finalWhere, whereArgs);
+                break;
+            case NOTE_CATEGORY_ID:
+                count = renameCategory(db, ContentUris.parseId(uri), values);
                 break;
             default:
                 throw new IllegalArgumentException("Unknown URI " + uri);
         }
 
-        getContext().getContentResolver().notifyChange(uri, null);
+        if (count > 0) {
+            invalidateCache(uri);
+            if (mPendingNotifications.get() == null) {
+                updateIndexes(uri);
+            }
+            // A renamed category shows up in every note filed under it.
+            notifyChange(match == NOTE_CATEGORY_ID ? NotePad.Notes.CONTENT_URI : uri, ContentResolver.NOTIFY_UPDATE);
+        }
         return count;
     }
 
+    /**
+     * Renames category {@code categoryId} to the name in {@code values}. Notes refer to the
+     * category by id, so this is a single-row update; only if another category already has the
+     * name are the notes moved over to it and the renamed category dropped.
+     *
+     * @return 1 if the category changed, 0 if it does not exist or already has the name
+     */
+    private int renameCategory(SQLiteDatabase db, long categoryId, ContentValues values) {
+        String name = values != null ? values.getAsString(NotePad.Categories.COLUMN_NAME_NAME) : null;
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Missing category name");
+        }
+        name = name.trim();
+
+        String id = Long.toString(categoryId);
+        db.beginTransaction();
+        try {
+            int count;
+            long existing = findNamedId(db, NotePad.Categories.TABLE_NAME, name);
+            if (existing < 0) {
+                ContentValues renamed = new ContentValues();
+                renamed.put(NotePad.Categories.COLUMN_NAME_NAME, name);
+                count = updateById(db, NotePad.Categories.TABLE_NAME, id, renamed);
+            } else if (existing == categoryId) {
+                count = 0;
+            } else {
+                ContentValues moved = new ContentValues();
+                moved.put(NotePad.Notes.COLUMN_NAME_CATEGORY_ID, existing);
+                db.update(NotePad.Notes.TABLE_NAME, moved, NotePad.Notes.COLUMN_NAME_CATEGORY_ID + " = ?",
+                        new String[]{id});
+                count = deleteById(db, NotePad.Categories.TABLE_NAME, id);
+            }
+            db.setTransactionSuccessful();
+            return count;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Turns the category of a note write into a category id. A name in
+     * {@link NotePad.Notes#COLUMN_NAME_CATEGORY} is trimmed and replaced by the id of the category
+     * with that name; a missing, null or blank category becomes
+     * {@link NotePad.Notes#DEFAULT_CATEGORY}. A missing category is only filled in when
+     * {@code fillMissing} is set.
+     */
+    private void normalizeCategory(SQLiteDatabase db, ContentValues values, boolean fillMissing) {
+        if (values.containsKey(NotePad.Notes.COLUMN_NAME_CATEGORY)) {
+            String name = values.getAsString(NotePad.Notes.COLUMN_NAME_CATEGORY);
+            values.remove(NotePad.Notes.COLUMN_NAME_CATEGORY);
+            values.put(NotePad.Notes.COLUMN_NAME_CATEGORY_ID, getOrCreateCategory(db, name));
+        } else if (values.containsKey(NotePad.Notes.COLUMN_NAME_CATEGORY_ID)
+                ? values.get(NotePad.Notes.COLUMN_NAME_CATEGORY_ID) == null : fillMissing) {
+            values.put(NotePad.Notes.COLUMN_NAME_CATEGORY_ID, getOrCreateCategory(db, null));
+        }
+    }
+
+    /**
+     * Returns the id of the category named {@code name}, adding the category if there is none.
+     */
+    private long getOrCreateCategory(SQLiteDatabase db, String name) {
+        if (name == null || name.trim().isEmpty()) {
+            name = NotePad.Notes.DEFAULT_CATEGORY;
+        } else {
+            name = name.trim();
+        }
+        return getOrCreateNamed(db, NotePad.Categories.TABLE_NAME, name);
+    }
+
+    /**
+     * Returns the id of the row named {@code name} in {@code table}, one of the categories and
+     * tags tables, adding the row if there is none.
+     */
+    private long getOrCreateNamed(SQLiteDatabase db, String table, String name) {
+        long id = findNamedId(db, table, name);
+        if (id < 0) {
+            ContentValues values = new ContentValues();
+            values.put(NAME_COLUMN, name);
+            id = db.insertWithOnConflict(table, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+            if (id < 0) {
+                // Another writer added the same name in between.
+                id = findNamedId(db, table, name);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Returns the id of the row named {@code name} in {@code table}, or -1 if there is none.
+     */
+    private long findNamedId(SQLiteDatabase db, String table, String name) {
+        try {
+            return DatabaseUtils.longForQuery(db, "SELECT " + BaseColumns._ID + " FROM " + table
+                    + " WHERE " + NAME_COLUMN + " = ?", new String[]{name});
+        } catch (SQLiteDoneException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Answers a single-row query from the row cache, reading the whole row from the database on
+     * a miss. Returns null if the projection asks for a column the cache does not hold, or if
+     * the row is too large to cache, in which case the caller falls back to a regular query.
+     */
+    private Cursor queryThroughCache(RowCache cache, Uri uri, String[] projection) {
+        String[] columns = projection != null ? projection : cache.mColumns;
+        String[] names = columns.clone();
+        int[] indexes = new int[columns.length];
+        // The characters read, for columns that are a slice of the cache's sliced column
+        int[][] slices = new int[columns.length][];
+        for (int i = 0; i < columns.length; i++) {
+            indexes[i] = Arrays.asList(cache.mColumns).indexOf(columns[i]);
+            if (indexes[i] < 0) {
+                slices[i] = cache.parseSlice(columns[i]);
+                if (slices[i] == null) {
+                    return null;
+                }
+                indexes[i] = cache.mSlicedIndex;
+                names[i] = cache.mColumns[cache.mSlicedIndex];
+            }
+        }
+
+        long id = ContentUris.parseId(uri);
+        Object[] row = cache.get(id);
+        if (row == null) {
+            long generation = cache.getGeneration();
+            Cursor c = mOpenHelper.getReadableDatabase().query(cache.mTable, cache.mProjection,
+                    BaseColumns._ID + " = ?", new String[]{Long.toString(id)}, null, null, null);
+            try {
+                if (c.moveToFirst()) {
+                    row = new Object[cache.mColumns.length];
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] = getValue(c, i);
+                    }
+                }
+            } finally {
+                c.close();
+            }
+            if (row != null) {
+                if (!cache.isComplete(row)) {
+                    return null;
+                }
+                cache.putIfCurrent(id, row, generation);
+            }
+        }
+
+        MatrixCursor result = new MatrixCursor(names, 1);
+        if (row != null) {
+            MatrixCursor.RowBuilder builder = result.newRow();
+            for (int i = 0; i < indexes.length; i++) {
+                Object value = row[indexes[i]];
+                builder.add(slices[i] != null ? RowCache.slice((String) value, slices[i][0], slices[i][1]) : value);
+            }
+        }
+        result.setNotificationUri(getContext().getContentResolver(), uri);
+        return result;
+    }
+
+    private static Object getValue(Cursor c, int column) {
+        switch (c.getType(column)) {
+            case Cursor.FIELD_TYPE_NULL:
+                return null;
+            case Cursor.FIELD_TYPE_INTEGER:
+                return c.getLong(column);
+            case Cursor.FIELD_TYPE_FLOAT:
+                return c.getDouble(column);
+            case Cursor.FIELD_TYPE_BLOB:
+                return c.getBlob(column);
+            default:
+                return c.getString(column);
+        }
+    }
+
+    /**
+     * Drops the cached rows a write to {@code uri} may have changed.
+     */
+    private void invalidateCache(Uri uri) {
+        switch (sUriMatcher.match(uri)) {
+            case NOTES:
+                mNoteCache.invalidateAll();
+                break;
+            case NOTE_ID:
+                mNoteCache.invalidate(ContentUris.parseId(uri));
+                break;
+            case TODOS:
+                mTodoCache.invalidateAll();
+                break;
+            case TODO_ID:
+                mTodoCache.invalidate(ContentUris.parseId(uri));
+                break;
+            case NOTE_CATEGORY_ID:
+                // Cached notes hold the category name.
+                mNoteCache.invalidateAll();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Brings the suggestion and tag indexes up to date with a finished write to {@code uri}.
+     */
+    private void updateIndexes(Uri uri) {
+        switch (sUriMatcher.match(uri)) {
+            case NOTES:
+                // Deleting notes drops their tags.
+                mSuggestions.invalidate();
+                mTags.invalidate();
+                break;
+            case NOTE_CATEGORY_ID:
+                mSuggestions.invalidate();
+                break;
+            case NOTE_ID:
+                mSuggestions.refresh(mOpenHelper.getReadableDatabase(), ContentUris.parseId(uri));
+                mTags.refresh(mOpenHelper.getReadableDatabase(), ContentUris.parseId(uri));
+                break;
+            case NOTE_TAGS:
+            case NOTE_TAG_ID:
+                mTags.refresh(mOpenHelper.getReadableDatabase(),
+                        Long.parseLong(uri.getPathSegments().get(NotePad.Notes.NOTE_ID_PATH_POSITION)));
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        if (NotePad.METHOD_GET_CACHE_STATS.equals(method)) {
+            Bundle stats = new Bundle();
+            stats.putInt(NotePad.KEY_NOTE_CACHE_HITS, mNoteCache.hitCount());
+            stats.putInt(NotePad.KEY_NOTE_CACHE_MISSES, mNoteCache.missCount());
+            stats.putInt(NotePad.KEY_TODO_CACHE_HITS, mTodoCache.hitCount());
+            stats.putInt(NotePad.KEY_TODO_CACHE_MISSES, mTodoCache.missCount());
+            return stats;
+        }
+        if (NotePad.Revisions.METHOD_RESTORE.equals(method)) {
+            restoreRevision(Uri.parse(arg));
+            return null;
+        }
+        return super.call(method, arg, extras);
+    }
+
+    /**
+     * Writes the body of the revision behind {@code revisionUri} back to its note. Goes through
+     * {@link #update}, so the restore shows up in the history and notifies like any other save.
+     */
+    private void restoreRevision(Uri revisionUri) {
+        if (sUriMatcher.match(revisionUri) != NOTE_REVISION_ID) {
+            throw new IllegalArgumentException("Unknown URI " + revisionUri);
+        }
+        List<String> segments = revisionUri.getPathSegments();
+        long noteId = Long.parseLong(segments.get(NotePad.Notes.NOTE_ID_PATH_POSITION));
+        long revisionId = Long.parseLong(segments.get(NotePad.Revisions.REVISION_ID_PATH_POSITION));
+
+        String body = RevisionStore.rebuild(mOpenHelper.getReadableDatabase(), noteId, revisionId);
+        if (body == null) {
+            throw new IllegalArgumentException("No revision " + revisionUri);
+        }
+
+        ContentValues values = new ContentValues();
+        values.put(NotePad.Notes.COLUMN_NAME_NOTE, body);
+        values.put(NotePad.Notes.COLUMN_NAME_MODIFICATION_DATE, System.currentTimeMillis());
+        update(ContentUris.withAppendedId(NotePad.Notes.CONTENT_URI, noteId), values, null, null);
+    }
+
+    /**
+     * Queues the history of note {@code noteId} to be trimmed to
+     * {@link RevisionStore#MAX_REVISIONS} revisions in its own transaction.
+     */
+    private void scheduleCompaction(final long noteId) {
+        synchronized (mPendingCompactions) {
+            if (!mPendingCompactions.add(noteId)) {
+                return;
+            }
+        }
+        mCompactHandler.post(() -> {
+            synchronized (mPendingCompactions) {
+                mPendingCompactions.remove(noteId);
+            }
+            SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                RevisionStore.compact(db, noteId);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        });
+    }
+
+    /**
+     * Updates one row by id. The id is bound rather than written into the SQL, so every write to
+     * a given set of columns has the same SQL text, and SQLite's per-connection statement cache
+     * compiles it only once.
+     */
+    private static int updateById(SQLiteDatabase db, String table, String id, ContentValues values) {
+        return db.update(table, values, BaseColumns._ID + " = ?", new String[]{id});
+    }
+
+    /**
+     * Deletes one row by id, with the id bound like in {@link #updateById}.
+     */
+    private static int deleteById(SQLiteDatabase db, String table, String id) {
+        return db.delete(table, BaseColumns._ID + " = ?", new String[]{id});
+    }
+
+    private static String[] prependArg(String arg, String[] args) {
+        if (args == null || args.length == 0) {
+            return new String[]{arg};
+        }
+        String[] result = new String[args.length + 1];
+        result[0] = arg;
+        System.arraycopy(args, 0, result, 1, args.length);
+        return result;
+    }
+
+    /**
+     * Inserts all rows in a single transaction. Either every row is inserted or, if one of
+     * them fails, none is. Observers are notified of the new rows once it commits.
+     */
+    @Override
+    public int bulkInsert(Uri uri, ContentValues[] values) {
+        int match = sUriMatcher.match(uri);
+        if (match != NOTES && match != TODOS) {
+            throw new IllegalArgumentException("Unknown URI " + uri);
+        }
+
+        SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        Map<Uri, Integer> pending = new LinkedHashMap<>();
+        mPendingNotifications.set(pending);
+        db.beginTransaction();
+        try {
+            for (ContentValues row : values) {
+                insert(uri, row);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            mPendingNotifications.remove();
+            // Readers may have cached rows between the writes and the commit, and the in-memory
+            // indexes only take committed (or rolled back) state.
+            for (Uri changed : pending.keySet()) {
+                invalidateCache(changed);
+                updateIndexes(changed);
+            }
+        }
+
+        if (values.length >= CHECKPOINT_BATCH_SIZE) {
+            checkpoint(db);
+        }
+        dispatchNotifications(pending);
+        return values.length;
+    }
+
+    /**
+     * Applies all operations in a single transaction, so a failing operation rolls back the
+     * whole batch. Observers are notified of every changed row once it commits.
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        Map<Uri, Integer> pending = new LinkedHashMap<>();
+        mPendingNotifications.set(pending);
+        ContentProviderResult[] results;
+        db.beginTransaction();
+        try {
+            results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            mPendingNotifications.remove();
+            // Readers may have cached rows between the writes and the commit, and the in-memory
+            // indexes only take committed (or rolled back) state.
+            for (Uri changed : pending.keySet()) {
+                invalidateCache(changed);
+                updateIndexes(changed);
+            }
+        }
+
+        if (operations.size() >= CHECKPOINT_BATCH_SIZE) {
+            checkpoint(db);
+        }
+        dispatchNotifications(pending);
+        return results;
+    }
+
+    /**
+     * Folds the WAL back into the database after a batch of at least
+     * {@link #CHECKPOINT_BATCH_SIZE} writes. A passive checkpoint never waits on readers;
+     * whatever it cannot copy now is picked up by the next autocheckpoint.
+     */
+    private static void checkpoint(SQLiteDatabase db) {
+        Cursor c = db.rawQuery("PRAGMA wal_checkpoint(PASSIVE);", null);
+        c.moveToFirst();
+        c.close();
+    }
+
+    /**
+     * Records that the row or rows behind {@code uri} changed. Inside a batch the notification
+     * waits for the batch to commit; otherwise it is held for {@link #NOTIFY_DELAY_MS} so that a
+     * burst of writes reaches observers as one delivery.
+     *
+     * @param flags the kind of change, as the ContentResolver NOTIFY_* flags
+     */
+    private void notifyChange(Uri uri, int flags) {
+        Map<Uri, Integer> pending = mPendingNotifications.get();
+        if (pending != null) {
+            addNotification(pending, uri, flags);
+            return;
+        }
+        synchronized (mScheduledNotifications) {
+            if (mScheduledNotifications.isEmpty()) {
+                mNotifyHandler.postDelayed(mFlushNotifications, NOTIFY_DELAY_MS);
+            }
+            addNotification(mScheduledNotifications, uri, flags);
+        }
+    }
+
+    private static void addNotification(Map<Uri, Integer> notifications, Uri uri, int flags) {
+        Integer previous = notifications.get(uri);
+        notifications.put(uri, previous == null ? flags : previous | flags);
+    }
+
+    private void flushScheduledNotifications() {
+        Map<Uri, Integer> notifications;
+        synchronized (mScheduledNotifications) {
+            notifications = new LinkedHashMap<>(mScheduledNotifications);
+            mScheduledNotifications.clear();
+        }
+        dispatchNotifications(notifications);
+    }
+
+    /**
+     * Delivers the collected notifications. Item URIs are sent as they are, unless there are so
+     * many that observers are better off with one notification per table. Since R the change
+     * flags travel along and URIs sharing the same flags go out in a single call.
+     */
+    private void dispatchNotifications(Map<Uri, Integer> notifications) {
+        if (notifications.size() > MAX_ITEM_NOTIFICATIONS) {
+            Map<Uri, Integer> tables = new LinkedHashMap<>();
+            for (Map.Entry<Uri, Integer> entry : notifications.entrySet()) {
+                addNotification(tables, getTableUri(entry.getKey()), entry.getValue());
+            }
+            notifications = tables;
+        }
+
+        ContentResolver resolver = getContext().getContentResolver();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            Map<Integer, List<Uri>> urisByFlags = new HashMap<>();
+            for (Map.Entry<Uri, Integer> entry : notifications.entrySet()) {
+                List<Uri> uris = urisByFlags.get(entry.getValue());
+                if (uris == null) {
+                    uris = new ArrayList<>();
+                    urisByFlags.put(entry.getValue(), uris);
+                }
+                uris.add(entry.getKey());
+            }
+            for (Map.Entry<Integer, List<Uri>> entry : urisByFlags.entrySet()) {
+                resolver.notifyChange(entry.getValue(), null, entry.getKey());
+            }
+        } else {
+            for (Uri uri : notifications.keySet()) {
+                resolver.notifyChange(uri, null);
+            }
+        }
+    }
+
+    private static Uri getTableUri(Uri uri) {
+        switch (sUriMatcher.match(uri)) {
+            case NOTES:
+            case NOTE_ID:
+            case NOTE_TAGS:
+            case NOTE_TAG_ID:
+                return NotePad.Notes.CONTENT_URI;
+            case TODOS:
+            case TODO_ID:
+                return NotePad.Todos.CONTENT_URI;
+            default:
+                return uri;
+        }
+    }
+
     DatabaseHelper getOpenHelperForTest() {
         return mOpenHelper;
     }
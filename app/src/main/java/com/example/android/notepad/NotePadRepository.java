@@ -0,0 +1,212 @@
+package com.example.android.notepad;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.RemoteException;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.ProcessLifecycleOwner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Write-behind queue for the inserts, updates and deletes the UI makes against
+ * {@link NotePadProvider}.
+ *
+ * Writes are queued in order and committed on a single background thread. Everything queued
+ * within {@link #WRITE_DELAY_MS} of the first pending write goes to the provider as one
+ * {@link ContentResolver#applyBatch} call, which the provider runs in a single transaction.
+ * Consecutive updates of the same URI are merged into one.
+ *
+ * When the app goes to the background the queue is flushed at once rather than after the
+ * delay, but the main thread does not wait for it. The writes are therefore only as durable as
+ * the process: one killed within the few milliseconds the final batch takes to commit loses it.
+ */
+final class NotePadRepository {
+
+    private static final String TAG = "NotePadRepository";
+
+    // How long a write may wait for others to share its transaction
+    private static final long WRITE_DELAY_MS = 100;
+
+    private static final int TYPE_INSERT = 0;
+    private static final int TYPE_UPDATE = 1;
+    private static final int TYPE_DELETE = 2;
+
+    private static NotePadRepository sInstance;
+
+    /**
+     * Receives the outcome of a queued write on the UI thread.
+     */
+    interface Callback {
+        /**
+         * @param result the provider's result: the new row's URI for an insert, the number of
+         *               rows changed otherwise. Null if the write failed.
+         */
+        void onWriteComplete(@Nullable ContentProviderResult result);
+    }
+
+    private static final class PendingWrite {
+        final int mType;
+        final Uri mUri;
+        final ContentValues mValues;
+        final List<Callback> mCallbacks = new ArrayList<>(1);
+
+        PendingWrite(int type, Uri uri, ContentValues values) {
+            mType = type;
+            mUri = uri;
+            mValues = values;
+        }
+
+        ContentProviderOperation toOperation() {
+            switch (mType) {
+                case TYPE_INSERT:
+                    return ContentProviderOperation.newInsert(mUri).withValues(mValues).build();
+                case TYPE_UPDATE:
+                    return ContentProviderOperation.newUpdate(mUri).withValues(mValues).build();
+                default:
+                    return ContentProviderOperation.newDelete(mUri).build();
+            }
+        }
+    }
+
+    private final ContentResolver mResolver;
+    private final Handler mWriteHandler;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mDrain = this::drain;
+
+    // Guarded by itself
+    private final List<PendingWrite> mPending = new ArrayList<>();
+    private boolean mDrainScheduled;
+
+    private NotePadRepository(Context context) {
+        mResolver = context.getContentResolver();
+        HandlerThread writeThread = new HandlerThread(TAG);
+        writeThread.start();
+        mWriteHandler = new Handler(writeThread.getLooper());
+
+        mMainHandler.post(() -> ProcessLifecycleOwner.get().getLifecycle().addObserver(
+                (LifecycleEventObserver) (source, event) -> {
+                    if (event == Lifecycle.Event.ON_STOP) {
+                        flush();
+                    }
+                }));
+    }
+
+    static synchronized NotePadRepository get(Context context) {
+        if (sInstance == null) {
+            sInstance = new NotePadRepository(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    void insert(Uri uri, @Nullable ContentValues values, @Nullable Callback callback) {
+        enqueue(TYPE_INSERT, uri, values, callback);
+    }
+
+    void update(Uri uri, ContentValues values, @Nullable Callback callback) {
+        enqueue(TYPE_UPDATE, uri, values, callback);
+    }
+
+    void delete(Uri uri, @Nullable Callback callback) {
+        enqueue(TYPE_DELETE, uri, null, callback);
+    }
+
+    /**
+     * Commits the queued writes now instead of waiting out the write-behind delay.
+     */
+    void flush() {
+        synchronized (mPending) {
+            if (!mDrainScheduled) {
+                return;
+            }
+            mWriteHandler.removeCallbacks(mDrain);
+            mWriteHandler.post(mDrain);
+        }
+    }
+
+    private void enqueue(int type, Uri uri, @Nullable ContentValues values, @Nullable Callback callback) {
+        ContentValues copy = values != null ? new ContentValues(values) : new ContentValues();
+        synchronized (mPending) {
+            PendingWrite write = mPending.isEmpty() ? null : mPending.get(mPending.size() - 1);
+            if (type == TYPE_UPDATE && write != null && write.mType == TYPE_UPDATE && write.mUri.equals(uri)) {
+                write.mValues.putAll(copy);
+            } else {
+                write = new PendingWrite(type, uri, copy);
+                mPending.add(write);
+            }
+            if (callback != null) {
+                write.mCallbacks.add(callback);
+            }
+            if (!mDrainScheduled) {
+                mDrainScheduled = true;
+                mWriteHandler.postDelayed(mDrain, WRITE_DELAY_MS);
+            }
+        }
+    }
+
+    /**
+     * Commits everything queued so far. Runs on the write thread.
+     */
+    private void drain() {
+        final List<PendingWrite> writes;
+        synchronized (mPending) {
+            mDrainScheduled = false;
+            if (mPending.isEmpty()) {
+                return;
+            }
+            writes = new ArrayList<>(mPending);
+            mPending.clear();
+        }
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(writes.size());
+        for (PendingWrite write : writes) {
+            operations.add(write.toOperation());
+        }
+
+        ContentProviderResult[] results;
+        try {
+            results = mResolver.applyBatch(NotePad.AUTHORITY, operations);
+        } catch (RemoteException | OperationApplicationException | RuntimeException e) {
+            // The whole transaction was rolled back; apply the writes one at a time so that a
+            // single bad write does not take the others with it.
+            Log.w(TAG, "Batch of " + operations.size() + " writes failed, retrying individually", e);
+            results = new ContentProviderResult[operations.size()];
+            for (int i = 0; i < operations.size(); i++) {
+                results[i] = applySingle(operations.get(i));
+            }
+        }
+
+        final ContentProviderResult[] delivered = results;
+        mMainHandler.post(() -> {
+            for (int i = 0; i < writes.size(); i++) {
+                for (Callback callback : writes.get(i).mCallbacks) {
+                    callback.onWriteComplete(delivered[i]);
+                }
+            }
+        });
+    }
+
+    private ContentProviderResult applySingle(ContentProviderOperation operation) {
+        ArrayList<ContentProviderOperation> single = new ArrayList<>(1);
+        single.add(operation);
+        try {
+            return mResolver.applyBatch(NotePad.AUTHORITY, single)[0];
+        } catch (RemoteException | OperationApplicationException | RuntimeException e) {
+            Log.w(TAG, "Write to " + operation.getUri() + " failed", e);
+            return null;
+        }
+    }
+}
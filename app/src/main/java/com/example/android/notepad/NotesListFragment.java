@@ -10,6 +10,8 @@ import android.content.Intent;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -18,6 +20,7 @@ import android.view.SubMenu;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.SearchView;
+import android.widget.SimpleCursorAdapter;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -33,15 +36,10 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
-public class NotesListFragment extends Fragment implements LoaderManager.LoaderCallbacks<Cursor>, NoteCategoryAdapter.OnNoteListener {
+
+public class NotesListFragment extends Fragment implements LoaderManager.LoaderCallbacks<NoteListModel>, NoteCategoryAdapter.OnNoteListener {
 
     private static final String TAG = "NotesListFragment";
 
@@ -49,19 +47,91 @@ public class NotesListFragment extends Fragment implements LoaderManager.LoaderC
             NotePad.Notes._ID, // 0
             NotePad.Notes.COLUMN_NAME_TITLE, // 1
             NotePad.Notes.COLUMN_NAME_MODIFICATION_DATE, // 2
-            NotePad.Notes.COLUMN_NAME_CATEGORY // 3
+            NotePad.Notes.COLUMN_NAME_CATEGORY_ID, // 3
+            NotePad.Notes.COLUMN_NAME_CATEGORY // 4
     };
 
     private static final int LOADER_ID = 0;
+    private static final int PAGE_LOADER_ID = 3;
+    private static final int CATEGORIES_LOADER_ID = 4;
+
+    // Number of notes fetched per page, and how close to the end of the list the next page is requested
+    private static final int PAGE_SIZE = 100;
+    private static final int PREFETCH_DISTANCE = 20;
+
+    // Pause in typing after which the search box text is searched
+    private static final long SEARCH_DELAY_MS = 250;
+
+    // Largest set of search results narrowed in place as the user types on; larger ones are searched again
+    private static final int NARROW_LIMIT = 200;
+
+    // Ages in days of the notes the date filter menu lists
+    private static final int WEEK_DAYS = 7;
+    private static final int MONTH_DAYS = 30;
 
     private NoteCategoryAdapter mAdapter;
     private RecyclerView mRecyclerView;
     private Toolbar mToolbar;
 
+    // The latest model delivered by the loaders; the adapter catches up once its diff is done
+    private NoteListModel mModel = NoteListModel.EMPTY;
+    private NotePad.NoteFilter mFilter = NotePad.NoteFilter.EMPTY;
+    private boolean mHasMore;
+    private boolean mPageRequested;
+
+    // The filter of the first-page load that produced mModel, or null before the first load
+    private NotePad.NoteFilter mModelFilter;
+
+    // Categories the filter menu lists, as last read by the categories loader
+    private long[] mCategoryIds = new long[0];
+    private String[] mCategoryNames = new String[0];
+
+    private final LoaderManager.LoaderCallbacks<Cursor> mCategoryCallbacks = new LoaderManager.LoaderCallbacks<Cursor>() {
+        @NonNull
+        @Override
+        public Loader<Cursor> onCreateLoader(int id, @Nullable Bundle args) {
+            // The provider returns each category with notes once, sorted by name, and reports
+            // any change to the notes on the cursor.
+            return new CursorLoader(requireContext(), NotePad.Categories.CONTENT_URI,
+                    new String[]{NotePad.Categories._ID, NotePad.Categories.COLUMN_NAME_NAME}, null, null, null);
+        }
+
+        @Override
+        public void onLoadFinished(@NonNull Loader<Cursor> loader, Cursor data) {
+            int count = data != null ? data.getCount() : 0;
+            long[] ids = new long[count];
+            String[] names = new String[count];
+            for (int i = 0; i < count && data.moveToPosition(i); i++) {
+                ids[i] = data.getLong(0);
+                names[i] = data.getString(1);
+            }
+            mCategoryIds = ids;
+            mCategoryNames = names;
+            // The toolbar menu is not prepared again until it is invalidated, which would also
+            // rebuild the search view, so the submenu is refilled in place.
+            if (mToolbar != null) {
+                bindCategoryMenu(mToolbar.getMenu());
+            }
+        }
+
+        @Override
+        public void onLoaderReset(@NonNull Loader<Cursor> loader) {
+            mCategoryIds = new long[0];
+            mCategoryNames = new String[0];
+        }
+    };
+
+    private SimpleCursorAdapter mSuggestionsAdapter;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private String mPendingSearch;
+    private final Runnable mSearch = () -> performSearch(mPendingSearch);
+
     public static class NoteHolder {
         long id;
         String title;
         long modificationDate;
+        long categoryId;
     }
 
     @Nullable
@@ -71,19 +141,50 @@ public class NotesListFragment extends Fragment implements LoaderManager.LoaderC
         return inflater.inflate(R.layout.notes_list, container, false);
     }
 
+    @Override
+    public void onHiddenChanged(boolean hidden) {
+        super.onHiddenChanged(hidden);
+        if (!hidden) {
+            installToolbar();
+        }
+    }
+
+    /**
+     * Makes this fragment's toolbar the activity's action bar. The activity keeps both tabs
+     * alive and only shows one, so the visible tab claims the action bar whenever it is shown.
+     */
+    private void installToolbar() {
+        if (mToolbar != null && getActivity() instanceof AppCompatActivity) {
+            ((AppCompatActivity) getActivity()).setSupportActionBar(mToolbar);
+        }
+    }
+
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
 
         mToolbar = view.findViewById(R.id.toolbar);
-        if (getActivity() != null) {
-            if (getActivity() instanceof AppCompatActivity) {
-                ((AppCompatActivity) getActivity()).setSupportActionBar(mToolbar);
-            }
+        if (!isHidden()) {
+            installToolbar();
         }
 
         mRecyclerView = view.findViewById(R.id.notes_recycler_view);
         mRecyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
+        mAdapter = new NoteCategoryAdapter(getContext(), this);
+        mRecyclerView.setAdapter(mAdapter);
+        mRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (!mHasMore || mPageRequested) {
+                    return;
+                }
+                LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+                if (layoutManager != null
+                        && layoutManager.findLastVisibleItemPosition() >= mAdapter.getItemCount() - PREFETCH_DISTANCE) {
+                    loadNextPage();
+                }
+            }
+        });
 
         // 设置 FloatingActionButton
         FloatingActionButton fab = view.findViewById(R.id.fab_add_note);
@@ -92,6 +193,7 @@ public class NotesListFragment extends Fragment implements LoaderManager.LoaderC
         });
 
         LoaderManager.getInstance(this).initLoader(LOADER_ID, null, this);
+        LoaderManager.getInstance(this).initLoader(CATEGORIES_LOADER_ID, null, mCategoryCallbacks);
     }
 
     @Override
@@ -103,17 +205,53 @@ public class NotesListFragment extends Fragment implements LoaderManager.LoaderC
             MenuItem searchItem = toolbarMenu.findItem(R.id.menu_search);
             SearchView searchView = (SearchView) searchItem.getActionView();
             if (searchView != null) {
+                // Title typeahead, answered from the provider's in-memory suggestion index on
+                // the adapter's filter thread as the search box text changes
+                mSuggestionsAdapter = new SimpleCursorAdapter(requireContext(),
+                        android.R.layout.simple_list_item_1, null,
+                        new String[]{NotePad.Suggestions.COLUMN_NAME_SUGGESTION}, new int[]{android.R.id.text1}, 0);
+                final Context context = requireContext().getApplicationContext();
+                mSuggestionsAdapter.setFilterQueryProvider(constraint -> context.getContentResolver().query(
+                        NotePad.Suggestions.CONTENT_URI.buildUpon()
+                                .appendQueryParameter(NotePad.Suggestions.QUERY_PARAMETER_PREFIX,
+                                        constraint != null ? constraint.toString() : "")
+                                .build(),
+                        null, null, null, null));
+                searchView.setSuggestionsAdapter(mSuggestionsAdapter);
+                searchView.setOnSuggestionListener(new SearchView.OnSuggestionListener() {
+                    @Override
+                    public boolean onSuggestionSelect(int position) {
+                        return false;
+                    }
+
+                    @Override
+                    public boolean onSuggestionClick(int position) {
+                        Cursor c = mSuggestionsAdapter.getCursor();
+                        if (c != null && c.moveToPosition(position)) {
+                            searchView.setQuery(c.getString(
+                                    c.getColumnIndexOrThrow(NotePad.Suggestions.COLUMN_NAME_SUGGESTION)), true);
+                        }
+                        return true;
+                    }
+                });
+
                 searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
                     @Override
                     public boolean onQueryTextSubmit(String query) {
+                        mHandler.removeCallbacks(mSearch);
                         performSearch(query);
                         return true;
                     }
 
                     @Override
                     public boolean onQueryTextChange(String newText) {
+                        // Search once typing pauses; each restart cancels the search still running.
+                        mHandler.removeCallbacks(mSearch);
                         if (newText.isEmpty()) {
                             performSearch(null);
+                        } else {
+                            mPendingSearch = newText;
+                            mHandler.postDelayed(mSearch, SEARCH_DELAY_MS);
                         }
                         return true;
                     }
@@ -130,20 +268,78 @@ public class NotesListFragment extends Fragment implements LoaderManager.LoaderC
         super.onCreateOptionsMenu(menu, inflater);
     }
 
+    @Override
+    public void onDestroyView() {
+        mHandler.removeCallbacks(mSearch);
+        if (mSuggestionsAdapter != null) {
+            mSuggestionsAdapter.changeCursor(null);
+        }
+        super.onDestroyView();
+    }
+
     private void performSearch(String query) {
-        Bundle args = new Bundle();
-        if (query != null && !query.isEmpty()) {
-            args.putString("query", query);
+        restartList(mFilter.withText(query));
+    }
+
+    private void filterByCategory(long categoryId) {
+        restartList(mFilter.withCategory(categoryId));
+    }
+
+    /**
+     * Lists only the notes modified in the last {@code days} days, or all notes if it is 0.
+     */
+    private void filterByAge(int days) {
+        long from = NotePad.NoteFilter.UNBOUNDED;
+        if (days > 0) {
+            from = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(days);
         }
-        LoaderManager.getInstance(this).restartLoader(LOADER_ID, args, this);
+        restartList(mFilter.withModifiedRange(from, NotePad.NoteFilter.UNBOUNDED));
     }
 
-    private void filterByCategory(String category) {
-        Bundle args = new Bundle();
-        if (category != null && !category.equals("Show All")) {
-            args.putString("category", category);
+    /**
+     * Returns the id of the date filter menu item that produced the date range of
+     * {@code filter}. The menu only sets the start of the range, a moment in time, so its age
+     * is matched to the nearer of the menu's ages.
+     */
+    private static int dateMenuItemId(NotePad.NoteFilter filter) {
+        long from = filter.getModifiedFrom();
+        if (from == NotePad.NoteFilter.UNBOUNDED) {
+            return R.id.menu_date_any;
+        }
+        long age = System.currentTimeMillis() - from;
+        return age < TimeUnit.DAYS.toMillis(WEEK_DAYS + MONTH_DAYS) / 2 ? R.id.menu_date_week : R.id.menu_date_month;
+    }
+
+    /**
+     * Reloads the list with {@code filter}. Search text, category and date range combine, and
+     * the provider answers all of them in one query.
+     */
+    private void restartList(NotePad.NoteFilter filter) {
+        if (filter.equals(mFilter)) {
+            return;
+        }
+        mFilter = filter;
+        mPageRequested = false;
+        LoaderManager.getInstance(this).destroyLoader(PAGE_LOADER_ID);
+        LoaderManager.getInstance(this).restartLoader(LOADER_ID, null, this);
+    }
+
+    /**
+     * Requests the page following the last loaded note, keyed on its position in the list order
+     * rather than an offset, so each page costs the same no matter how deep the user scrolled.
+     */
+    private void loadNextPage() {
+        NoteListModel model = mModel;
+        if (model.getNoteCount() == 0) {
+            return;
         }
-        LoaderManager.getInstance(this).restartLoader(LOADER_ID, args, this);
+        int last = model.getNoteCount() - 1;
+        Bundle args = new Bundle();
+        args.putLong(NotePad.Notes.QUERY_PARAMETER_AFTER_ID, model.getId(last));
+        args.putLong(NotePad.Notes.QUERY_PARAMETER_AFTER_MODIFIED, model.getModified(last));
+        args.putLong(NotePad.Notes.QUERY_PARAMETER_AFTER_CATEGORY_ID, model.getCategoryId(last));
+        mPageRequested = true;
+        LoaderManager.getInstance(this).restartLoader(PAGE_LOADER_ID, args, this);
     }
 
     @Override
@@ -151,30 +347,32 @@ public class NotesListFragment extends Fragment implements LoaderManager.LoaderC
         super.onPrepareOptionsMenu(menu);
 
         if (getActivity() != null) {
-            SubMenu categorySubMenu = menu.findItem(R.id.menu_filter_category).getSubMenu();
-            categorySubMenu.clear();
-            categorySubMenu.add(Menu.NONE, R.id.menu_show_all_categories, Menu.NONE, "Show All");
-
-            Set<String> categories = new HashSet<>();
-            Cursor categoryCursor = getActivity().getContentResolver().query(NotePad.Notes.CONTENT_URI,
-                    new String[]{NotePad.Notes.COLUMN_NAME_CATEGORY}, null, null, null);
-
-            if (categoryCursor != null) {
-                while (categoryCursor.moveToNext()) {
-                    String category = categoryCursor.getString(0);
-                    if (category != null && !category.isEmpty()) {
-                        categories.add(category);
-                    }
-                }
-                categoryCursor.close();
-            }
+            bindCategoryMenu(menu);
 
-            List<String> sortedCategories = new ArrayList<>(categories);
-            Collections.sort(sortedCategories);
+            // The date item is checked from the filter, which outlives the menu; checking it
+            // unchecks the others in its group.
+            menu.findItem(dateMenuItemId(mFilter)).setChecked(true);
+        }
+    }
 
-            for (String category : sortedCategories) {
-                categorySubMenu.add(Menu.NONE, Menu.NONE, Menu.NONE, category).setCheckable(true);
-            }
+    /**
+     * Lists the categories last read by the categories loader in the category filter submenu.
+     * Items carry the category id as their own id.
+     */
+    private void bindCategoryMenu(Menu menu) {
+        MenuItem categoryItem = menu.findItem(R.id.menu_filter_category);
+        if (categoryItem == null) {
+            return;
+        }
+        SubMenu categorySubMenu = categoryItem.getSubMenu();
+        categorySubMenu.clear();
+        categorySubMenu.add(Menu.NONE, R.id.menu_show_all_categories, Menu.NONE, "Show All");
+
+        long selected = mFilter.getCategoryId();
+        for (int i = 0; i < mCategoryIds.length; i++) {
+            categorySubMenu.add(R.id.menu_group_category, (int) mCategoryIds[i], Menu.NONE, mCategoryNames[i])
+                    .setCheckable(true)
+                    .setChecked(mCategoryIds[i] == selected);
         }
     }
 
@@ -183,10 +381,14 @@ public class NotesListFragment extends Fragment implements LoaderManager.LoaderC
         if (getActivity() != null) {
             int id = item.getItemId();
             if (id == R.id.menu_show_all_categories) {
-                filterByCategory(null);
+                filterByCategory(NotePad.NoteFilter.ALL_CATEGORIES);
                 return true;
-            } else if (item.getGroupId() == Menu.NONE && id != R.id.menu_search && id != R.id.menu_filter_category) { // Dynamic category items
-                filterByCategory(item.getTitle().toString());
+            } else if (item.getGroupId() == R.id.menu_group_category) {
+                filterByCategory(id);
+                return true;
+            } else if (item.getGroupId() == R.id.menu_group_date) {
+                item.setChecked(true);
+                filterByAge(id == R.id.menu_date_week ? WEEK_DAYS : id == R.id.menu_date_month ? MONTH_DAYS : 0);
                 return true;
             }
         }
@@ -195,74 +397,92 @@ public class NotesListFragment extends Fragment implements LoaderManager.LoaderC
 
     @NonNull
     @Override
-    public Loader<Cursor> onCreateLoader(int id, @Nullable Bundle args) {
-        Uri baseUri = NotePad.Notes.CONTENT_URI;
-        String selection = null;
-        String[] selectionArgs = null;
+    public Loader<NoteListModel> onCreateLoader(int id, @Nullable Bundle args) {
+        NotePad.NoteFilter filter = mFilter;
+        Uri baseUri;
+        String sortOrder = NotePad.Notes.LIST_SORT_ORDER;
+        NoteListModel base = null;
+        NoteListModel narrowed = null;
+
+        if (filter.hasText()) {
+            // Search through the full-text index. Results are grouped by category and ranked
+            // by relevance within each category.
+            baseUri = filter.appendTo(NotePad.Notes.SEARCH_URI.buildUpon()).build();
+            sortOrder = NotePad.Notes.COLUMN_NAME_CATEGORY_ID + " ASC";
+            // Typing on only narrows the terms, so every match is among the current results.
+            NotePad.NoteFilter modelFilter = mModelFilter;
+            if (id == LOADER_ID && modelFilter != null && modelFilter.hasText()
+                    && filter.getText().startsWith(modelFilter.getText())
+                    && filter.withText(modelFilter.getText()).equals(modelFilter)
+                    && mModel.getNoteCount() <= NARROW_LIMIT) {
+                narrowed = mModel;
+            }
+        } else {
+            baseUri = filter.appendTo(NotePad.Notes.CONTENT_URI.buildUpon()
+                    .appendQueryParameter(NotePad.Notes.QUERY_PARAMETER_LIMIT, String.valueOf(PAGE_SIZE)))
+                    .build();
+        }
 
         if (args != null) {
-            String query = args.getString("query");
-            String category = args.getString("category");
-
-            if (query != null && !query.isEmpty()) {
-                selection = NotePad.Notes.COLUMN_NAME_TITLE + " LIKE ? OR " + NotePad.Notes.COLUMN_NAME_NOTE + " LIKE ?";
-                selectionArgs = new String[]{"%" + query + "%", "%" + query + "%"};
-            } else if (category != null && !category.isEmpty()) {
-                selection = NotePad.Notes.COLUMN_NAME_CATEGORY + " = ?";
-                selectionArgs = new String[]{category};
+            if (id == PAGE_LOADER_ID) {
+                baseUri = baseUri.buildUpon()
+                        .appendQueryParameter(NotePad.Notes.QUERY_PARAMETER_AFTER_ID,
+                                String.valueOf(args.getLong(NotePad.Notes.QUERY_PARAMETER_AFTER_ID)))
+                        .appendQueryParameter(NotePad.Notes.QUERY_PARAMETER_AFTER_MODIFIED,
+                                String.valueOf(args.getLong(NotePad.Notes.QUERY_PARAMETER_AFTER_MODIFIED)))
+                        .appendQueryParameter(NotePad.Notes.QUERY_PARAMETER_AFTER_CATEGORY_ID,
+                                String.valueOf(args.getLong(NotePad.Notes.QUERY_PARAMETER_AFTER_CATEGORY_ID)))
+                        .build();
+                base = mModel;
             }
         }
 
-        return new CursorLoader(requireActivity(), baseUri,
-                PROJECTION, selection, selectionArgs,
-                NotePad.Notes.COLUMN_NAME_CATEGORY + " ASC, " + NotePad.Notes.DEFAULT_SORT_ORDER);
+        NoteListLoader loader = new NoteListLoader(requireActivity(), base, baseUri,
+                PROJECTION, null, null, sortOrder);
+        if (narrowed != null) {
+            loader.narrow(narrowed);
+        }
+        return loader;
     }
 
     @Override
-    public void onLoadFinished(@NonNull Loader<Cursor> loader, @Nullable Cursor data) {
-        Map<String, List<NoteHolder>> categoryMap = new HashMap<>();
-
-        if (data != null) {
-            int idCol = data.getColumnIndexOrThrow(NotePad.Notes._ID);
-            int titleCol = data.getColumnIndexOrThrow(NotePad.Notes.COLUMN_NAME_TITLE);
-            int modDateCol = data.getColumnIndexOrThrow(NotePad.Notes.COLUMN_NAME_MODIFICATION_DATE);
-            int categoryCol = data.getColumnIndexOrThrow(NotePad.Notes.COLUMN_NAME_CATEGORY);
-
-            while (data.moveToNext()) {
-                String category = data.getString(categoryCol);
-                if (category == null || category.trim().isEmpty()) {
-                    category = "Uncategorized";
-                }
-
-                if (!categoryMap.containsKey(category)) {
-                    categoryMap.put(category, new ArrayList<>());
-                }
-
-                NoteHolder note = new NoteHolder();
-                note.id = data.getLong(idCol);
-                note.title = data.getString(titleCol);
-                note.modificationDate = data.getLong(modDateCol);
-
-                categoryMap.get(category).add(note);
+    public void onLoadFinished(@NonNull Loader<NoteListModel> loader, NoteListModel data) {
+        NoteListLoader listLoader = (NoteListLoader) loader;
+        if (loader.getId() == PAGE_LOADER_ID) {
+            if (!mPageRequested) {
+                return;
             }
+            mPageRequested = false;
+            mHasMore = data.getNoteCount() - mModel.getNoteCount() >= PAGE_SIZE;
+
+            // Widen the first-page loader so that a reload after a change covers every row
+            // loaded so far instead of collapsing the list back to one page.
+            Loader<NoteListModel> firstPage = LoaderManager.getInstance(this).getLoader(LOADER_ID);
+            if (firstPage instanceof NoteListLoader) {
+                NoteListLoader firstPageLoader = (NoteListLoader) firstPage;
+                firstPageLoader.setUri(NotePad.NoteFilter.fromUri(firstPageLoader.getUri())
+                        .appendTo(NotePad.Notes.CONTENT_URI.buildUpon()
+                                .appendQueryParameter(NotePad.Notes.QUERY_PARAMETER_LIMIT,
+                                        String.valueOf(data.getNoteCount())))
+                        .build());
+            }
+        } else {
+            mPageRequested = false;
+            String limit = listLoader.getUri().getQueryParameter(NotePad.Notes.QUERY_PARAMETER_LIMIT);
+            mHasMore = limit != null && data.getNoteCount() >= Integer.parseInt(limit);
+            mModelFilter = NotePad.NoteFilter.fromUri(listLoader.getUri());
         }
-
-        List<String> sortedCategories = new ArrayList<>(categoryMap.keySet());
-        Collections.sort(sortedCategories);
-
-        List<Object> items = new ArrayList<>();
-        for (String category : sortedCategories) {
-            items.add(category);
-            items.addAll(categoryMap.get(category));
-        }
-
-        mAdapter = new NoteCategoryAdapter(getContext(), items, this);
-        mRecyclerView.setAdapter(mAdapter);
+        mModel = data;
+        mAdapter.submitModel(data);
     }
 
     @Override
-    public void onLoaderReset(@NonNull Loader<Cursor> loader) {
-        mRecyclerView.setAdapter(null);
+    public void onLoaderReset(@NonNull Loader<NoteListModel> loader) {
+        if (loader.getId() == LOADER_ID) {
+            mModel = NoteListModel.EMPTY;
+            mModelFilter = null;
+            mAdapter.submitModel(mModel);
+        }
     }
 
     @Override
@@ -286,7 +506,7 @@ public class NotesListFragment extends Fragment implements LoaderManager.LoaderC
                 .setPositiveButton("Delete", (dialog, which) -> {
                     Uri noteUri = ContentUris.withAppendedId(NotePad.Notes.CONTENT_URI, note.id);
                     if (getActivity() != null) {
-                        getActivity().getContentResolver().delete(noteUri, null, null);
+                        NotePadRepository.get(getActivity()).delete(noteUri, null);
                         // The loader will automatically update the list.
                     }
                 })
@@ -0,0 +1,256 @@
+package com.example.android.notepad;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Storage of the revision history kept in {@link NotePad.Revisions#TABLE_NAME}.
+ *
+ * A revision is either a snapshot holding the whole body, or a delta against the revision
+ * before it. A delta keeps the length of the prefix and suffix shared with the previous body
+ * and the text in between, which is all that changes when a user edits one place of a note.
+ * A new snapshot is written every {@link #SNAPSHOT_INTERVAL} revisions, or when the delta
+ * would not be much smaller than the body, so rebuilding a revision never replays a long chain.
+ *
+ * Every revision stores the hash of its body. If the note was changed without going through
+ * {@link #record}, the hash of the previous body no longer matches and the chain restarts with
+ * a snapshot instead of building on a body it never saw.
+ *
+ * {@link #record} and {@link #compact} must be called inside a transaction on the writable
+ * database. {@link #rebuild} returns null for a revision that compaction has already dropped.
+ */
+final class RevisionStore {
+
+    private static final int KIND_SNAPSHOT = 0;
+    private static final int KIND_DELTA = 1;
+
+    // Deltas written after a snapshot before the next snapshot is forced
+    private static final int SNAPSHOT_INTERVAL = 16;
+
+    /**
+     * Number of revisions kept per note by {@link #compact}, and how far past it a note may
+     * grow before compaction is worth scheduling
+     */
+    static final int MAX_REVISIONS = 50;
+    private static final int COMPACT_SLACK = 10;
+
+    private static final String INDEX_NAME = "note_revisions_note_idx";
+
+    // Storage columns that are not part of the contract
+    private static final String COLUMN_KIND = "kind";
+    private static final String COLUMN_DEPTH = "depth";
+    private static final String COLUMN_HASH = "hash";
+    private static final String COLUMN_PREFIX = "prefix";
+    private static final String COLUMN_SUFFIX = "suffix";
+    private static final String COLUMN_DATA = "data";
+
+    private static final String TABLE = NotePad.Revisions.TABLE_NAME;
+    private static final String ID = NotePad.Revisions._ID;
+    private static final String NOTE_ID = NotePad.Revisions.COLUMN_NAME_NOTE_ID;
+
+    // This class cannot be instantiated
+    private RevisionStore() {
+    }
+
+    /**
+     * Creates the revisions table, its index, and the trigger dropping the history of a deleted
+     * note.
+     */
+    static void createTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE + " ("
+                + ID + " INTEGER PRIMARY KEY,"
+                + NOTE_ID + " INTEGER NOT NULL,"
+                + NotePad.Revisions.COLUMN_NAME_CREATE_DATE + " INTEGER,"
+                + NotePad.Revisions.COLUMN_NAME_LENGTH + " INTEGER,"
+                + COLUMN_KIND + " INTEGER NOT NULL,"
+                + COLUMN_DEPTH + " INTEGER NOT NULL,"
+                + COLUMN_HASH + " INTEGER NOT NULL,"
+                + COLUMN_PREFIX + " INTEGER,"
+                + COLUMN_SUFFIX + " INTEGER,"
+                + COLUMN_DATA + " TEXT"
+                + ");");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_NAME + " ON " + TABLE + " (" + NOTE_ID + ", " + ID + ");");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE + "_ad AFTER DELETE ON " + NotePad.Notes.TABLE_NAME
+                + " BEGIN DELETE FROM " + TABLE + " WHERE " + NOTE_ID + " = old." + NotePad.Notes._ID + "; END;");
+    }
+
+    /**
+     * Records that the body of note {@code noteId} changed from {@code oldText}, last modified
+     * at {@code oldModified}, to {@code newText}. The first change of a note also records the
+     * body it started from, so that version can be restored too.
+     *
+     * @return the number of revisions the note now has, or -1 if the body did not change
+     */
+    static int record(SQLiteDatabase db, long noteId, String oldText, long oldModified, String newText, long now) {
+        if (oldText == null) {
+            oldText = "";
+        }
+        if (newText == null) {
+            newText = "";
+        }
+        if (oldText.equals(newText)) {
+            return -1;
+        }
+
+        int depth = -1;
+        Cursor c = db.query(TABLE, new String[]{COLUMN_DEPTH, COLUMN_HASH}, NOTE_ID + " = ?",
+                new String[]{Long.toString(noteId)}, null, null, ID + " DESC", "1");
+        try {
+            if (c.moveToFirst() && c.getInt(1) == oldText.hashCode()) {
+                depth = c.getInt(0);
+            }
+        } finally {
+            c.close();
+        }
+        if (depth < 0) {
+            // No history yet, or it does not end at the body being replaced.
+            insertSnapshot(db, noteId, oldText, oldModified);
+            depth = 0;
+        }
+
+        int newLength = newText.length();
+        int oldLength = oldText.length();
+        int prefix = 0;
+        int maxPrefix = Math.min(oldLength, newLength);
+        while (prefix < maxPrefix && oldText.charAt(prefix) == newText.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        int maxSuffix = maxPrefix - prefix;
+        while (suffix < maxSuffix && oldText.charAt(oldLength - 1 - suffix) == newText.charAt(newLength - 1 - suffix)) {
+            suffix++;
+        }
+        // Never split a surrogate pair, which would not survive the trip through UTF-8.
+        if (prefix > 0 && Character.isHighSurrogate(newText.charAt(prefix - 1))) {
+            prefix--;
+        }
+        if (suffix > 0 && Character.isLowSurrogate(newText.charAt(newLength - suffix))) {
+            suffix--;
+        }
+        String data = newText.substring(prefix, newLength - suffix);
+
+        if (depth + 1 >= SNAPSHOT_INTERVAL || data.length() > newLength / 2) {
+            insertSnapshot(db, noteId, newText, now);
+        } else {
+            ContentValues values = new ContentValues();
+            values.put(NOTE_ID, noteId);
+            values.put(NotePad.Revisions.COLUMN_NAME_CREATE_DATE, now);
+            values.put(NotePad.Revisions.COLUMN_NAME_LENGTH, newLength);
+            values.put(COLUMN_KIND, KIND_DELTA);
+            values.put(COLUMN_DEPTH, depth + 1);
+            values.put(COLUMN_HASH, newText.hashCode());
+            values.put(COLUMN_PREFIX, prefix);
+            values.put(COLUMN_SUFFIX, suffix);
+            values.put(COLUMN_DATA, data);
+            db.insert(TABLE, null, values);
+        }
+
+        return (int) DatabaseUtils.queryNumEntries(db, TABLE, NOTE_ID + " = ?",
+                new String[]{Long.toString(noteId)});
+    }
+
+    /**
+     * Returns true if a note with {@code revisionCount} revisions is due for {@link #compact}.
+     */
+    static boolean needsCompaction(int revisionCount) {
+        return revisionCount > MAX_REVISIONS + COMPACT_SLACK;
+    }
+
+    private static void insertSnapshot(SQLiteDatabase db, long noteId, String text, long created) {
+        ContentValues values = new ContentValues();
+        values.put(NOTE_ID, noteId);
+        values.put(NotePad.Revisions.COLUMN_NAME_CREATE_DATE, created);
+        values.put(NotePad.Revisions.COLUMN_NAME_LENGTH, text.length());
+        values.put(COLUMN_KIND, KIND_SNAPSHOT);
+        values.put(COLUMN_DEPTH, 0);
+        values.put(COLUMN_HASH, text.hashCode());
+        values.put(COLUMN_DATA, text);
+        db.insert(TABLE, null, values);
+    }
+
+    /**
+     * Rebuilds the body of note {@code noteId} as of revision {@code revisionId}, or returns
+     * null if the note has no such revision.
+     */
+    static String rebuild(SQLiteDatabase db, long noteId, long revisionId) {
+        String[] args = new String[]{Long.toString(noteId), Long.toString(revisionId)};
+        long snapshotId;
+        String text;
+        Cursor c = db.query(TABLE, new String[]{ID, COLUMN_DATA},
+                NOTE_ID + " = ? AND " + ID + " <= ? AND " + COLUMN_KIND + " = " + KIND_SNAPSHOT,
+                args, null, null, ID + " DESC", "1");
+        try {
+            if (!c.moveToFirst()) {
+                return null;
+            }
+            snapshotId = c.getLong(0);
+            text = c.getString(1);
+        } finally {
+            c.close();
+        }
+        if (snapshotId != revisionId) {
+            // Make sure the revision exists before replaying up to it.
+            if (DatabaseUtils.queryNumEntries(db, TABLE, NOTE_ID + " = ? AND " + ID + " = ?", args) == 0) {
+                return null;
+            }
+        }
+
+        c = db.query(TABLE, new String[]{COLUMN_PREFIX, COLUMN_SUFFIX, COLUMN_DATA},
+                NOTE_ID + " = ? AND " + ID + " > ? AND " + ID + " <= ?",
+                new String[]{args[0], Long.toString(snapshotId), args[1]}, null, null, ID + " ASC");
+        try {
+            while (c.moveToNext()) {
+                int prefix = c.getInt(0);
+                int suffix = c.getInt(1);
+                String data = c.getString(2);
+                text = new StringBuilder(prefix + data.length() + suffix)
+                        .append(text, 0, prefix)
+                        .append(data)
+                        .append(text, text.length() - suffix, text.length())
+                        .toString();
+            }
+        } finally {
+            c.close();
+        }
+        return text;
+    }
+
+    /**
+     * Drops all but the newest {@link #MAX_REVISIONS} revisions of note {@code noteId}. The
+     * oldest revision kept is rewritten as a snapshot first, so the ones after it can still be
+     * rebuilt.
+     */
+    static void compact(SQLiteDatabase db, long noteId) {
+        String noteArg = Long.toString(noteId);
+        long oldestKept;
+        int oldestKind;
+        Cursor c = db.query(TABLE, new String[]{ID, COLUMN_KIND}, NOTE_ID + " = ?", new String[]{noteArg},
+                null, null, ID + " DESC", (MAX_REVISIONS - 1) + ", 1");
+        try {
+            if (!c.moveToFirst()) {
+                return;
+            }
+            oldestKept = c.getLong(0);
+            oldestKind = c.getInt(1);
+        } finally {
+            c.close();
+        }
+
+        if (oldestKind != KIND_SNAPSHOT) {
+            String text = rebuild(db, noteId, oldestKept);
+            if (text == null) {
+                return;
+            }
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_KIND, KIND_SNAPSHOT);
+            values.put(COLUMN_DEPTH, 0);
+            values.putNull(COLUMN_PREFIX);
+            values.putNull(COLUMN_SUFFIX);
+            values.put(COLUMN_DATA, text);
+            db.update(TABLE, values, ID + " = ?", new String[]{Long.toString(oldestKept)});
+        }
+        db.delete(TABLE, NOTE_ID + " = ? AND " + ID + " < ?", new String[]{noteArg, Long.toString(oldestKept)});
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.android.notepad;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.LongSparseArray;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * In-memory prefix index over note titles and categories, answering {@link NotePad.Suggestions}
+ * queries without touching the database.
+ *
+ * Each kind of value is kept as a sorted array of distinct lower-cased keys with the number of
+ * notes holding each key. All keys starting with a prefix sort next to each other, so a query
+ * is a binary search for the first key at or after the prefix and a scan while keys still start
+ * with it. The index also remembers the title and category of every note, which lets a write be
+ * applied as removing the note's old values and adding its new ones.
+ *
+ * The index is read from the notes table on first use. The provider calls {@link #refresh} for
+ * every note a committed write touched and {@link #invalidate} for writes it cannot attribute to
+ * single notes. Both are safe against a concurrent load: a load holds the lock until the index
+ * is complete, and refreshing a note the load already saw in its new state changes nothing.
+ */
+final class SuggestionIndex {
+
+    static final int KIND_TITLE = 0;
+    static final int KIND_CATEGORY = 1;
+
+    private static final String[] NOTE_COLUMNS = new String[]{
+            NotePad.Notes._ID,
+            NotePad.Notes.COLUMN_NAME_TITLE,
+            NotePadProvider.CATEGORY_NAME
+    };
+
+    private static final String[] DEFAULT_PROJECTION = new String[]{
+            NotePad.Suggestions._ID,
+            NotePad.Suggestions.COLUMN_NAME_SUGGESTION,
+            NotePad.Suggestions.COLUMN_NAME_NOTE_COUNT
+    };
+
+    /**
+     * Distinct values of one kind, sorted by key, with their note counts.
+     */
+    private static final class Terms {
+        private String[] mKeys = new String[16];
+        private String[] mValues = new String[16];
+        private int[] mCounts = new int[16];
+        private int mSize;
+
+        /**
+         * Replaces the contents with {@code values}, which may contain nulls and duplicates.
+         */
+        void load(String[] values, int count) {
+            String[][] pairs = new String[count][];
+            int n = 0;
+            for (int i = 0; i < count; i++) {
+                if (values[i] != null && !values[i].isEmpty()) {
+                    pairs[n++] = new String[]{key(values[i]), values[i]};
+                }
+            }
+            Arrays.sort(pairs, 0, n, new Comparator<String[]>() {
+                @Override
+                public int compare(String[] a, String[] b) {
+                    return a[0].compareTo(b[0]);
+                }
+            });
+
+            int capacity = Math.max(16, n);
+            mKeys = new String[capacity];
+            mValues = new String[capacity];
+            mCounts = new int[capacity];
+            mSize = 0;
+            for (int i = 0; i < n; i++) {
+                if (mSize > 0 && mKeys[mSize - 1].equals(pairs[i][0])) {
+                    mCounts[mSize - 1]++;
+                } else {
+                    mKeys[mSize] = pairs[i][0];
+                    mValues[mSize] = pairs[i][1];
+                    mCounts[mSize] = 1;
+                    mSize++;
+                }
+            }
+        }
+
+        void add(String value) {
+            if (value == null || value.isEmpty()) {
+                return;
+            }
+            String key = key(value);
+            int i = Arrays.binarySearch(mKeys, 0, mSize, key);
+            if (i >= 0) {
+                mCounts[i]++;
+                return;
+            }
+            i = -(i + 1);
+            if (mSize == mKeys.length) {
+                mKeys = Arrays.copyOf(mKeys, mSize * 2);
+                mValues = Arrays.copyOf(mValues, mSize * 2);
+                mCounts = Arrays.copyOf(mCounts, mSize * 2);
+            }
+            System.arraycopy(mKeys, i, mKeys, i + 1, mSize - i);
+            System.arraycopy(mValues, i, mValues, i + 1, mSize - i);
+            System.arraycopy(mCounts, i, mCounts, i + 1, mSize - i);
+            mKeys[i] = key;
+            mValues[i] = value;
+            mCounts[i] = 1;
+            mSize++;
+        }
+
+        void remove(String value) {
+            if (value == null || value.isEmpty()) {
+                return;
+            }
+            int i = Arrays.binarySearch(mKeys, 0, mSize, key(value));
+            if (i < 0 || --mCounts[i] > 0) {
+                return;
+            }
+            mSize--;
+            System.arraycopy(mKeys, i + 1, mKeys, i, mSize - i);
+            System.arraycopy(mValues, i + 1, mValues, i, mSize - i);
+            System.arraycopy(mCounts, i + 1, mCounts, i, mSize - i);
+            mKeys[mSize] = null;
+            mValues[mSize] = null;
+        }
+
+        /**
+         * Returns the index of the first key at or after {@code prefix}.
+         */
+        int lowerBound(String prefix) {
+            int i = Arrays.binarySearch(mKeys, 0, mSize, prefix);
+            return i >= 0 ? i : -(i + 1);
+        }
+    }
+
+    private final Terms mTitles = new Terms();
+    private final Terms mCategories = new Terms();
+
+    // Title and category of every note, by note id; null until the index is loaded
+    private LongSparseArray<String[]> mNotes;
+
+    private static String key(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the suggestions of {@code kind} starting with {@code prefix}, in key order.
+     */
+    synchronized MatrixCursor query(SQLiteDatabase db, String[] projection, int kind, String prefix, int limit) {
+        ensureLoaded(db);
+        if (projection == null) {
+            projection = DEFAULT_PROJECTION;
+        }
+        Terms terms = kind == KIND_CATEGORY ? mCategories : mTitles;
+        String key = prefix != null ? key(prefix) : "";
+
+        MatrixCursor result = new MatrixCursor(projection);
+        Object[] row = new Object[projection.length];
+        for (int i = terms.lowerBound(key), n = 0;
+             i < terms.mSize && n < limit && terms.mKeys[i].startsWith(key); i++, n++) {
+            for (int column = 0; column < projection.length; column++) {
+                switch (projection[column]) {
+                    case NotePad.Suggestions._ID:
+                        row[column] = n;
+                        break;
+                    case NotePad.Suggestions.COLUMN_NAME_SUGGESTION:
+                        row[column] = terms.mValues[i];
+                        break;
+                    case NotePad.Suggestions.COLUMN_NAME_NOTE_COUNT:
+                        row[column] = terms.mCounts[i];
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Invalid column " + projection[column]);
+                }
+            }
+            result.addRow(row);
+        }
+        return result;
+    }
+
+    /**
+     * Re-reads the title and category of note {@code noteId} after a write committed. Does
+     * nothing while the index is not loaded, since loading reads the committed state anyway.
+     */
+    synchronized void refresh(SQLiteDatabase db, long noteId) {
+        if (mNotes == null) {
+            return;
+        }
+        String[] values = null;
+        Cursor c = db.query(NotePad.Notes.TABLE_NAME, NOTE_COLUMNS, NotePad.Notes._ID + " = ?",
+                new String[]{Long.toString(noteId)}, null, null, null);
+        try {
+            if (c.moveToFirst()) {
+                values = new String[]{c.getString(1), c.getString(2)};
+            }
+        } finally {
+            c.close();
+        }
+
+        String[] old = mNotes.get(noteId);
+        if (old != null) {
+            mTitles.remove(old[0]);
+            mCategories.remove(old[1]);
+        }
+        if (values != null) {
+            mTitles.add(values[0]);
+            mCategories.add(values[1]);
+            mNotes.put(noteId, values);
+        } else {
+            mNotes.remove(noteId);
+        }
+    }
+
+    /**
+     * Drops the index, to be read again by the next query.
+     */
+    synchronized void invalidate() {
+        mNotes = null;
+    }
+
+    private void ensureLoaded(SQLiteDatabase db) {
+        if (mNotes != null) {
+            return;
+        }
+        Cursor c = db.query(NotePad.Notes.TABLE_NAME, NOTE_COLUMNS, null, null, null, null,
+                NotePad.Notes._ID + " ASC");
+        try {
+            int count = c.getCount();
+            LongSparseArray<String[]> notes = new LongSparseArray<>(count);
+            String[] titles = new String[count];
+            String[] categories = new String[count];
+            for (int i = 0; c.moveToNext(); i++) {
+                titles[i] = c.getString(1);
+                categories[i] = c.getString(2);
+                // Rows come in id order, so this appends rather than inserts.
+                notes.append(c.getLong(0), new String[]{titles[i], categories[i]});
+            }
+            mTitles.load(titles, count);
+            mCategories.load(categories, count);
+            mNotes = notes;
+        } finally {
+            c.close();
+        }
+    }
+}
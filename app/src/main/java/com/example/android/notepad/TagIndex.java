@@ -0,0 +1,213 @@
+package com.example.android.notepad;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.LongSparseArray;
+
+/**
+ * In-memory index of which notes carry each tag, kept as one {@link NoteBitmap} per tag. Tag
+ * filters and tag counts are answered by intersecting or uniting bitmaps, so they cost neither
+ * a join over {@link NotePad.NoteTags#TABLE_NAME} nor one query per tag.
+ *
+ * The index is read from the note_tags table on first use. The provider calls {@link #refresh}
+ * for every note whose tags a committed write may have changed, including deleted notes, and
+ * {@link #invalidate} for writes it cannot attribute to single notes. As in
+ * {@link SuggestionIndex}, a load holds the lock until it is complete and refreshing a note
+ * already seen in its new state changes nothing.
+ */
+final class TagIndex {
+
+    private static final String[] NOTE_TAG_COLUMNS = new String[]{
+            NotePad.NoteTags.COLUMN_NAME_TAG_ID,
+            NotePad.NoteTags.COLUMN_NAME_NOTE_ID
+    };
+
+    // Most notes a condition lists by id; more are matched against the link table row by row
+    static final int MAX_LISTED_NOTES = 200;
+
+    // Notes carrying each tag, by tag id; null until the index is loaded. Tags without notes
+    // have no entry.
+    private LongSparseArray<NoteBitmap> mTags;
+
+    /**
+     * Returns the notes carrying all of {@code tagIds} if {@code matchAll} is set, or any of
+     * them otherwise. The result is a new bitmap the caller owns.
+     */
+    synchronized NoteBitmap select(SQLiteDatabase db, long[] tagIds, boolean matchAll) {
+        ensureLoaded(db);
+        NoteBitmap[] bitmaps = new NoteBitmap[tagIds.length];
+        for (int i = 0; i < tagIds.length; i++) {
+            bitmaps[i] = mTags.get(tagIds[i]);
+            if (bitmaps[i] == null) {
+                if (matchAll) {
+                    return new NoteBitmap();
+                }
+                bitmaps[i] = new NoteBitmap();
+            }
+        }
+
+        NoteBitmap result = new NoteBitmap();
+        if (bitmaps.length == 0) {
+            return result;
+        }
+        if (matchAll) {
+            // Intersecting the smallest bitmaps first keeps every intermediate result small.
+            sortByCardinality(bitmaps);
+            result = bitmaps[0].copy();
+            for (int i = 1; i < bitmaps.length && !result.isEmpty(); i++) {
+                result = NoteBitmap.and(result, bitmaps[i]);
+            }
+        } else {
+            for (NoteBitmap bitmap : bitmaps) {
+                result = NoteBitmap.or(result, bitmap);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the SQL condition that the note whose id is in {@code idColumn} is one of
+     * {@code notes}, the result of {@link #select} for {@code tagIds} and {@code matchAll}.
+     *
+     * Up to {@link #MAX_LISTED_NOTES} notes are listed by id. Past that the list would only
+     * grow the statement, so each row is looked up in the link table's primary key instead:
+     * once for any of the tags, or once per tag for all of them.
+     */
+    static String condition(NoteBitmap notes, long[] tagIds, boolean matchAll, String idColumn) {
+        StringBuilder condition = new StringBuilder();
+        if (notes.getCardinality() <= MAX_LISTED_NOTES) {
+            if (notes.isEmpty()) {
+                // No note has the tags; "IN ()" is not valid SQL.
+                return "0";
+            }
+            condition.append(idColumn).append(" IN (");
+            appendIds(condition, notes.toArray());
+            return condition.append(')').toString();
+        }
+
+        String link = "EXISTS (SELECT 1 FROM " + NotePad.NoteTags.TABLE_NAME
+                + " WHERE " + NotePad.NoteTags.COLUMN_NAME_NOTE_ID + " = " + idColumn
+                + " AND " + NotePad.NoteTags.COLUMN_NAME_TAG_ID;
+        if (matchAll) {
+            for (long tagId : tagIds) {
+                if (condition.length() > 0) {
+                    condition.append(" AND ");
+                }
+                condition.append(link).append(" = ").append(tagId).append(')');
+            }
+        } else {
+            condition.append(link).append(" IN (");
+            appendIds(condition, tagIds);
+            condition.append("))");
+        }
+        return condition.toString();
+    }
+
+    private static void appendIds(StringBuilder sql, long[] ids) {
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0) {
+                sql.append(',');
+            }
+            sql.append(ids[i]);
+        }
+    }
+
+    /**
+     * Returns the number of notes carrying tag {@code tagId}, counting only the notes in
+     * {@code within} unless it is null.
+     */
+    synchronized int count(SQLiteDatabase db, long tagId, NoteBitmap within) {
+        ensureLoaded(db);
+        NoteBitmap notes = mTags.get(tagId);
+        if (notes == null) {
+            return 0;
+        }
+        return within != null ? NoteBitmap.andCardinality(notes, within) : notes.getCardinality();
+    }
+
+    /**
+     * Re-reads the tags of note {@code noteId} after a write committed. Does nothing while the
+     * index is not loaded, since loading reads the committed state anyway.
+     */
+    synchronized void refresh(SQLiteDatabase db, long noteId) {
+        if (mTags == null) {
+            return;
+        }
+        for (int i = mTags.size() - 1; i >= 0; i--) {
+            NoteBitmap notes = mTags.valueAt(i);
+            if (notes.remove(noteId) && notes.isEmpty()) {
+                mTags.removeAt(i);
+            }
+        }
+        Cursor c = db.query(NotePad.NoteTags.TABLE_NAME, new String[]{NotePad.NoteTags.COLUMN_NAME_TAG_ID},
+                NotePad.NoteTags.COLUMN_NAME_NOTE_ID + " = ?", new String[]{Long.toString(noteId)},
+                null, null, null);
+        try {
+            while (c.moveToNext()) {
+                notesOf(c.getLong(0)).add(noteId);
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * Drops the index, to be read again by the next query.
+     */
+    synchronized void invalidate() {
+        mTags = null;
+    }
+
+    private NoteBitmap notesOf(long tagId) {
+        NoteBitmap notes = mTags.get(tagId);
+        if (notes == null) {
+            notes = new NoteBitmap();
+            mTags.put(tagId, notes);
+        }
+        return notes;
+    }
+
+    private void ensureLoaded(SQLiteDatabase db) {
+        if (mTags != null) {
+            return;
+        }
+        // Read in the order of the tag index, so each bitmap only ever grows at its end.
+        Cursor c = db.query(NotePad.NoteTags.TABLE_NAME, NOTE_TAG_COLUMNS, null, null, null, null,
+                NotePad.NoteTags.COLUMN_NAME_TAG_ID + " ASC, " + NotePad.NoteTags.COLUMN_NAME_NOTE_ID + " ASC");
+        try {
+            LongSparseArray<NoteBitmap> tags = new LongSparseArray<>();
+            long tagId = -1;
+            NoteBitmap notes = null;
+            while (c.moveToNext()) {
+                if (notes == null || c.getLong(0) != tagId) {
+                    tagId = c.getLong(0);
+                    notes = new NoteBitmap();
+                    // Rows come in tag id order, so this appends rather than inserts.
+                    tags.append(tagId, notes);
+                }
+                notes.add(c.getLong(1));
+            }
+            mTags = tags;
+        } finally {
+            c.close();
+        }
+    }
+
+    private static void sortByCardinality(NoteBitmap[] bitmaps) {
+        int[] cardinalities = new int[bitmaps.length];
+        for (int i = 0; i < bitmaps.length; i++) {
+            cardinalities[i] = bitmaps[i].getCardinality();
+        }
+        // Few tags are combined at once, so an insertion sort is enough.
+        for (int i = 1; i < bitmaps.length; i++) {
+            for (int j = i; j > 0 && cardinalities[j - 1] > cardinalities[j]; j--) {
+                int cardinality = cardinalities[j];
+                cardinalities[j] = cardinalities[j - 1];
+                cardinalities[j - 1] = cardinality;
+                NoteBitmap bitmap = bitmaps[j];
+                bitmaps[j] = bitmaps[j - 1];
+                bitmaps[j - 1] = bitmap;
+            }
+        }
+    }
+}
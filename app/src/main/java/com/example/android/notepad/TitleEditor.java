@@ -144,18 +144,13 @@ public class TitleEditor extends Activity {
             values.put(NotePad.Notes.COLUMN_NAME_TITLE, mText.getText().toString());
 
             /*
-             * Updates the provider with the note's new title.
-             *
-             * Note: This is being done on the UI thread. It will block the thread until the
-             * update completes. In a sample app, going against a simple provider based on a
-             * local database, the block will be momentary, but in a real app you should use
-             * android.content.AsyncQueryHandler or android.os.AsyncTask.
+             * Queues the update of the note's new title. The repository commits it on its own
+             * thread, so leaving the activity does not wait for the database.
              */
-            getContentResolver().update(
+            NotePadRepository.get(this).update(
                 mUri,    // The URI for the note to update.
                 values,  // The values map containing the columns to update and the values to use.
-                null,    // No selection criteria is used, so no "where" columns are needed.
-                null     // No "where" columns are used, so no "where" values are needed.
+                null     // Nothing needs to know when the update completes.
             );
 
         }
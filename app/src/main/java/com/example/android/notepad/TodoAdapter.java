@@ -1,11 +1,16 @@
 package com.example.android.notepad;
 
 import android.app.AlertDialog;
+import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
-import android.database.Cursor;
+import android.content.res.ColorStateList;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LongSparseArray;
+import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -18,6 +23,7 @@ import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.cardview.widget.CardView;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.ItemTouchHelper;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -25,15 +31,37 @@ import com.google.android.material.snackbar.Snackbar;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 public class TodoAdapter extends RecyclerView.Adapter<TodoAdapter.TodoViewHolder> {
 
+    private static final ColorStateList COMPLETED_BACKGROUND = ColorStateList.valueOf(Color.LTGRAY);
+
+    // Payload of a change that only flipped the completion flag
+    private static final Object PAYLOAD_COMPLETED = new Object();
+
+    // Diffs of successive models are computed here, one at a time
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
     private Context mContext;
-    private Cursor mCursor;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private TodoListModel mModel = TodoListModel.EMPTY;
+    // Incremented by every submitModel call, so that a diff finishing late is dropped
+    private int mMaxGeneration;
+
+    // Completion states shown ahead of the provider, by todo id. UI thread only.
+    private final LongSparseArray<Boolean> mOptimisticCompleted = new LongSparseArray<>();
+    // Number of completion writes still in flight, by todo id. UI thread only.
+    private final LongSparseArray<Integer> mUnconfirmed = new LongSparseArray<>();
 
-    public TodoAdapter(Context context, Cursor cursor) {
+    // One background per distinct todo color, so binding does not allocate a ColorStateList
+    private final SparseArray<ColorStateList> mBackgrounds = new SparseArray<>();
+
+    public TodoAdapter(Context context) {
         mContext = context;
-        mCursor = cursor;
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -45,47 +73,104 @@ public class TodoAdapter extends RecyclerView.Adapter<TodoAdapter.TodoViewHolder
 
     @Override
     public void onBindViewHolder(@NonNull TodoViewHolder holder, int position) {
-        if (!mCursor.moveToPosition(position)) {
+        holder.mTextView.setText(mModel.getText(position));
+        holder.bindCompleted(mModel.getColor(position), isCompleted(position));
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull TodoViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty() || !onlyCompleted(payloads)) {
+            onBindViewHolder(holder, position);
+        } else {
+            holder.bindCompleted(mModel.getColor(position), isCompleted(position));
+        }
+    }
+
+    private static boolean onlyCompleted(List<Object> payloads) {
+        for (int i = 0; i < payloads.size(); i++) {
+            if (payloads.get(i) != PAYLOAD_COMPLETED) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the completion state to display at {@code position}: the pending optimistic state
+     * if the user toggled the todo, otherwise the state last loaded from the provider.
+     */
+    private boolean isCompleted(int position) {
+        Boolean completed = mOptimisticCompleted.get(mModel.getId(position));
+        return completed != null ? completed : mModel.isCompleted(position);
+    }
+
+    /**
+     * Flips the completion state of the todo at {@code position} on screen immediately and
+     * queues the write. Rapid toggles of one todo are merged by the repository into a single
+     * update; the display is reconciled once the last of them finishes.
+     */
+    private void toggleCompleted(int position) {
+        final long id = mModel.getId(position);
+        boolean completed = !isCompleted(position);
+        mOptimisticCompleted.put(id, completed);
+        mUnconfirmed.put(id, mUnconfirmed.get(id, 0) + 1);
+        notifyItemChanged(position, PAYLOAD_COMPLETED);
+
+        ContentValues values = new ContentValues();
+        values.put(NotePad.Todos.COLUMN_NAME_IS_COMPLETED, completed);
+        NotePadRepository.get(mContext).update(ContentUris.withAppendedId(NotePad.Todos.CONTENT_URI, id), values,
+                result -> onCompletedWritten(id, result != null && result.count != null && result.count > 0));
+    }
+
+    private void onCompletedWritten(long id, boolean success) {
+        int inFlight = mUnconfirmed.get(id, 1) - 1;
+        if (inFlight > 0) {
+            // The user toggled again meanwhile; the last write settles this todo.
+            mUnconfirmed.put(id, inFlight);
             return;
         }
+        mUnconfirmed.remove(id);
+        if (success) {
+            reconcile(id);
+            return;
+        }
+        // Fall back to the stored state.
+        mOptimisticCompleted.remove(id);
+        int position = mModel.indexOf(id);
+        if (position >= 0) {
+            notifyItemChanged(position, PAYLOAD_COMPLETED);
+        }
+        Toast.makeText(mContext, "任务更新失败", Toast.LENGTH_SHORT).show();
+    }
 
-        long id = mCursor.getLong(mCursor.getColumnIndex(NotePad.Todos._ID));
-        String text = mCursor.getString(mCursor.getColumnIndex(NotePad.Todos.COLUMN_NAME_TEXT));
-        String color = mCursor.getString(mCursor.getColumnIndex(NotePad.Todos.COLUMN_NAME_COLOR));
-        boolean isCompleted = mCursor.getInt(mCursor.getColumnIndex(NotePad.Todos.COLUMN_NAME_IS_COMPLETED)) == 1;
+    /**
+     * Drops the optimistic state of a confirmed todo once the loaded model agrees with it, or
+     * once the todo is gone from the list.
+     */
+    private void reconcile(long id) {
+        Boolean completed = mOptimisticCompleted.get(id);
+        if (completed == null || mUnconfirmed.get(id) != null) {
+            return;
+        }
+        int position = mModel.indexOf(id);
+        if (position < 0 || mModel.isCompleted(position) == completed) {
+            mOptimisticCompleted.remove(id);
+        }
+    }
 
-        holder.mTextView.setText(text);
-        holder.mCardView.setCardBackgroundColor(Color.parseColor(color));
+    private void reconcileAll() {
+        for (int i = mOptimisticCompleted.size() - 1; i >= 0; i--) {
+            reconcile(mOptimisticCompleted.keyAt(i));
+        }
+    }
 
-        if (isCompleted) {
-            holder.mTextView.setPaintFlags(holder.mTextView.getPaintFlags() | Paint.STRIKE_THRU_TEXT_FLAG);
-            holder.mCardView.setCardBackgroundColor(Color.LTGRAY);
-        } else {
-            holder.mTextView.setPaintFlags(holder.mTextView.getPaintFlags() & (~Paint.STRIKE_THRU_TEXT_FLAG));
-        }
-
-        holder.itemView.setTag(id);
-        holder.itemView.setOnClickListener(v -> {
-            boolean newCompletedState = !isCompleted;
-            ContentValues values = new ContentValues();
-            values.put(NotePad.Todos.COLUMN_NAME_IS_COMPLETED, newCompletedState);
-            mContext.getContentResolver().update(NotePad.Todos.CONTENT_URI, values, NotePad.Todos._ID + "=?", new String[]{String.valueOf(id)});
-            
-            // 更新UI状态
-            if (newCompletedState) {
-                holder.mTextView.setPaintFlags(holder.mTextView.getPaintFlags() | Paint.STRIKE_THRU_TEXT_FLAG);
-                holder.mCardView.setCardBackgroundColor(Color.LTGRAY);
-            } else {
-                holder.mTextView.setPaintFlags(holder.mTextView.getPaintFlags() & (~Paint.STRIKE_THRU_TEXT_FLAG));
-                holder.mCardView.setCardBackgroundColor(Color.parseColor(color));
-            }
-        });
-        
-        // 长按项目触发删除操作
-        holder.itemView.setOnLongClickListener(v -> {
-            showDeleteConfirmationDialog(id, text, holder.itemView);
-            return true;
-        });
+    private ColorStateList getBackground(int color) {
+        ColorStateList background = mBackgrounds.get(color);
+        if (background == null) {
+            background = ColorStateList.valueOf(color);
+            mBackgrounds.put(color, background);
+        }
+        return background;
     }
 
     private void showDeleteConfirmationDialog(long id, String text, View itemView) {
@@ -94,16 +179,13 @@ public class TodoAdapter extends RecyclerView.Adapter<TodoAdapter.TodoViewHolder
                 .setMessage("确定要删除任务 \"" + text + "\" 吗？")
                 .setPositiveButton("删除", (dialog, which) -> {
                     // 执行删除操作
-                    int rowsDeleted = mContext.getContentResolver().delete(
-                            NotePad.Todos.CONTENT_URI,
-                            NotePad.Todos._ID + "=?",
-                            new String[]{String.valueOf(id)}
-                    );
-                    
-                    if (rowsDeleted > 0) {
-                        // 显示删除成功提示
-                        Toast.makeText(mContext, "任务已删除", Toast.LENGTH_SHORT).show();
-                    }
+                    NotePadRepository.get(mContext).delete(ContentUris.withAppendedId(NotePad.Todos.CONTENT_URI, id),
+                            result -> {
+                                if (result != null && result.count != null && result.count > 0) {
+                                    // 显示删除成功提示
+                                    Toast.makeText(mContext, "任务已删除", Toast.LENGTH_SHORT).show();
+                                }
+                            });
                 })
                 .setNegativeButton("取消", null)
                 .show();
@@ -111,20 +193,96 @@ public class TodoAdapter extends RecyclerView.Adapter<TodoAdapter.TodoViewHolder
 
     @Override
     public int getItemCount() {
-        return (mCursor == null) ? 0 : mCursor.getCount();
+        return mModel.getCount();
     }
 
-    public void swapCursor(Cursor newCursor) {
-        if (mCursor != null) {
-            mCursor.close();
+    @Override
+    public long getItemId(int position) {
+        return mModel.getId(position);
+    }
+
+    /**
+     * Replaces the displayed todos. The diff against the current model is computed on a
+     * background thread; a todo whose completion flag alone changed is rebound with a payload
+     * that only touches its strike-through and background.
+     */
+    void submitModel(TodoListModel model) {
+        final int generation = ++mMaxGeneration;
+        final TodoListModel oldModel = mModel;
+        if (oldModel == model) {
+            return;
+        }
+        if (oldModel.getCount() == 0 || model.getCount() == 0) {
+            // Nothing to diff against; swap the model and report the whole range.
+            mModel = model;
+            reconcileAll();
+            if (oldModel.getCount() > 0) {
+                notifyItemRangeRemoved(0, oldModel.getCount());
+            }
+            if (model.getCount() > 0) {
+                notifyItemRangeInserted(0, model.getCount());
+            }
+            return;
+        }
+
+        DIFF_EXECUTOR.execute(() -> {
+            DiffUtil.DiffResult result = DiffUtil.calculateDiff(new ModelDiffCallback(oldModel, model));
+            mMainHandler.post(() -> {
+                if (generation == mMaxGeneration) {
+                    mModel = model;
+                    reconcileAll();
+                    result.dispatchUpdatesTo(TodoAdapter.this);
+                }
+            });
+        });
+    }
+
+    /**
+     * Todos match by id; their contents are the text, color and completion flag.
+     */
+    private static class ModelDiffCallback extends DiffUtil.Callback {
+        private final TodoListModel mOld;
+        private final TodoListModel mNew;
+
+        ModelDiffCallback(TodoListModel oldModel, TodoListModel newModel) {
+            mOld = oldModel;
+            mNew = newModel;
         }
-        mCursor = newCursor;
-        if (newCursor != null) {
-            notifyDataSetChanged();
+
+        @Override
+        public int getOldListSize() {
+            return mOld.getCount();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNew.getCount();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            return mOld.getId(oldPosition) == mNew.getId(newPosition);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            return mOld.isCompleted(oldPosition) == mNew.isCompleted(newPosition)
+                    && sameDisplay(oldPosition, newPosition);
+        }
+
+        @Override
+        public Object getChangePayload(int oldPosition, int newPosition) {
+            return sameDisplay(oldPosition, newPosition) ? PAYLOAD_COMPLETED : null;
+        }
+
+        private boolean sameDisplay(int oldPosition, int newPosition) {
+            String oldText = mOld.getText(oldPosition);
+            return mOld.getColor(oldPosition) == mNew.getColor(newPosition)
+                    && (oldText == null ? mNew.getText(newPosition) == null : oldText.equals(mNew.getText(newPosition)));
         }
     }
 
-    public static class TodoViewHolder extends RecyclerView.ViewHolder {
+    public class TodoViewHolder extends RecyclerView.ViewHolder {
         public TextView mTextView;
         public CardView mCardView;
 
@@ -132,6 +290,32 @@ public class TodoAdapter extends RecyclerView.Adapter<TodoAdapter.TodoViewHolder
             super(itemView);
             mTextView = itemView.findViewById(R.id.todo_text);
             mCardView = itemView.findViewById(R.id.todo_card);
+
+            itemView.setOnClickListener(v -> {
+                int position = getAdapterPosition();
+                if (position != RecyclerView.NO_POSITION) {
+                    toggleCompleted(position);
+                }
+            });
+
+            // 长按项目触发删除操作
+            itemView.setOnLongClickListener(v -> {
+                int position = getAdapterPosition();
+                if (position != RecyclerView.NO_POSITION) {
+                    showDeleteConfirmationDialog(mModel.getId(position), mModel.getText(position), itemView);
+                }
+                return true;
+            });
+        }
+
+        void bindCompleted(int color, boolean completed) {
+            if (completed) {
+                mTextView.setPaintFlags(mTextView.getPaintFlags() | Paint.STRIKE_THRU_TEXT_FLAG);
+                mCardView.setCardBackgroundColor(COMPLETED_BACKGROUND);
+            } else {
+                mTextView.setPaintFlags(mTextView.getPaintFlags() & (~Paint.STRIKE_THRU_TEXT_FLAG));
+                mCardView.setCardBackgroundColor(getBackground(color));
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -1,8 +1,8 @@
 package com.example.android.notepad;
 
 import android.app.AlertDialog;
+import android.content.ContentUris;
 import android.content.ContentValues;
-import android.database.Cursor;
 import android.graphics.Color;
 import android.os.Bundle;
 import android.view.LayoutInflater;
@@ -17,7 +17,6 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 import androidx.fragment.app.Fragment;
 import androidx.loader.app.LoaderManager;
-import androidx.loader.content.CursorLoader;
 import androidx.loader.content.Loader;
 import androidx.recyclerview.widget.ItemTouchHelper;
 import androidx.recyclerview.widget.LinearLayoutManager;
@@ -25,10 +24,18 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
-public class TodoFragment extends Fragment implements LoaderManager.LoaderCallbacks<Cursor> {
+public class TodoFragment extends Fragment implements LoaderManager.LoaderCallbacks<TodoListModel> {
+
+    private static final String[] PROJECTION = new String[]{
+            NotePad.Todos._ID, // 0
+            NotePad.Todos.COLUMN_NAME_TEXT, // 1
+            NotePad.Todos.COLUMN_NAME_COLOR, // 2
+            NotePad.Todos.COLUMN_NAME_IS_COMPLETED // 3
+    };
 
     private static final int LOADER_ID = 1;
     private TodoAdapter mAdapter;
+    private Toolbar mToolbar;
 
     @Nullable
     @Override
@@ -36,19 +43,36 @@ public class TodoFragment extends Fragment implements LoaderManager.LoaderCallba
         return inflater.inflate(R.layout.fragment_todo, container, false);
     }
 
+    @Override
+    public void onHiddenChanged(boolean hidden) {
+        super.onHiddenChanged(hidden);
+        if (!hidden) {
+            installToolbar();
+        }
+    }
+
+    /**
+     * Makes this fragment's toolbar the activity's action bar while this tab is the one shown.
+     */
+    private void installToolbar() {
+        if (mToolbar != null && getActivity() instanceof AppCompatActivity) {
+            ((AppCompatActivity) getActivity()).setSupportActionBar(mToolbar);
+        }
+    }
+
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
 
-        Toolbar toolbar = view.findViewById(R.id.toolbar_todos);
-        if (getActivity() instanceof AppCompatActivity) {
-            ((AppCompatActivity) getActivity()).setSupportActionBar(toolbar);
+        mToolbar = view.findViewById(R.id.toolbar_todos);
+        if (!isHidden()) {
+            installToolbar();
         }
 
         RecyclerView recyclerView = view.findViewById(R.id.recycler_view);
         recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
 
-        mAdapter = new TodoAdapter(getContext(), null);
+        mAdapter = new TodoAdapter(getContext());
         recyclerView.setAdapter(mAdapter);
 
         LoaderManager.getInstance(this).initLoader(LOADER_ID, null, this);
@@ -64,8 +88,12 @@ public class TodoFragment extends Fragment implements LoaderManager.LoaderCallba
 
             @Override
             public void onSwiped(@NonNull RecyclerView.ViewHolder viewHolder, int direction) {
-                long id = (long) viewHolder.itemView.getTag();
-                getContext().getContentResolver().delete(NotePad.Todos.CONTENT_URI, NotePad.Todos._ID + "=?", new String[]{String.valueOf(id)});
+                int position = viewHolder.getAdapterPosition();
+                if (position == RecyclerView.NO_POSITION) {
+                    return;
+                }
+                long id = mAdapter.getItemId(position);
+                NotePadRepository.get(requireContext()).delete(ContentUris.withAppendedId(NotePad.Todos.CONTENT_URI, id), null);
             }
         }).attachToRecyclerView(recyclerView);
     }
@@ -131,7 +159,7 @@ public class TodoFragment extends Fragment implements LoaderManager.LoaderCallba
                 ContentValues values = new ContentValues();
                 values.put(NotePad.Todos.COLUMN_NAME_TEXT, text);
                 values.put(NotePad.Todos.COLUMN_NAME_COLOR, selectedColor[0]);
-                getContext().getContentResolver().insert(NotePad.Todos.CONTENT_URI, values);
+                NotePadRepository.get(requireContext()).insert(NotePad.Todos.CONTENT_URI, values, null);
             }
         });
         builder.setNegativeButton("Cancel", (dialog, which) -> dialog.cancel());
@@ -141,17 +169,17 @@ public class TodoFragment extends Fragment implements LoaderManager.LoaderCallba
 
     @NonNull
     @Override
-    public Loader<Cursor> onCreateLoader(int id, @Nullable Bundle args) {
-        return new CursorLoader(getContext(), NotePad.Todos.CONTENT_URI, null, null, null, null);
+    public Loader<TodoListModel> onCreateLoader(int id, @Nullable Bundle args) {
+        return new TodoListLoader(getContext(), PROJECTION);
     }
 
     @Override
-    public void onLoadFinished(@NonNull Loader<Cursor> loader, @Nullable Cursor data) {
-        mAdapter.swapCursor(data);
+    public void onLoadFinished(@NonNull Loader<TodoListModel> loader, @Nullable TodoListModel data) {
+        mAdapter.submitModel(data != null ? data : TodoListModel.EMPTY);
     }
 
     @Override
-    public void onLoaderReset(@NonNull Loader<Cursor> loader) {
-        mAdapter.swapCursor(null);
+    public void onLoaderReset(@NonNull Loader<TodoListModel> loader) {
+        mAdapter.submitModel(TodoListModel.EMPTY);
     }
 }
@@ -0,0 +1,247 @@
+package com.example.android.notepad;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.MergeCursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.core.content.ContentResolverCompat;
+import androidx.core.os.CancellationSignal;
+import androidx.core.os.OperationCanceledException;
+import androidx.loader.content.AsyncTaskLoader;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads the todo list into a {@link TodoListModel} on the loader's background thread and
+ * reloads it whenever the todos change.
+ *
+ * The provider names the todos that changed by their item URIs, and since R says how. A todo
+ * that was updated or deleted is re-read by its URI, which the provider answers from its row
+ * cache, and patched into the loaded list. Updates keep a todo's place, as the list is ordered
+ * by creation date. Anything else, such as an insert or a change to the whole table, reloads
+ * the list.
+ */
+class TodoListLoader extends AsyncTaskLoader<TodoListModel> {
+
+    // Most todos re-read one by one before a single query for the whole list is cheaper
+    private static final int MAX_CHANGED_TODOS = 32;
+
+    private final ContentObserver mObserver = new ContentObserver(new Handler(Looper.getMainLooper())) {
+        @Override
+        public boolean deliverSelfNotifications() {
+            return true;
+        }
+
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            // Before R the kind of change does not come along; re-reading the row tells.
+            onTodosChanged(Collections.singletonList(uri), 0);
+        }
+
+        @Override
+        public void onChange(boolean selfChange, Collection<Uri> uris, int flags) {
+            onTodosChanged(uris, flags);
+        }
+    };
+    private final String[] mProjection;
+
+    // The list loads patch, and the changes waiting for the next load, guarded by this
+    private TodoListModel mModel;
+    private Map<Long, Integer> mChangedTodos = new HashMap<>();
+    private boolean mReloadAll;
+
+    private boolean mObserving;
+    private CancellationSignal mCancellationSignal;
+
+    TodoListLoader(Context context, String[] projection) {
+        super(context);
+        mProjection = projection;
+    }
+
+    /**
+     * Notes which todos changed and how, as the ContentResolver NOTIFY_* {@code flags}, or 0 if
+     * that is not known, and has them loaded.
+     */
+    private void onTodosChanged(Collection<Uri> uris, int flags) {
+        synchronized (this) {
+            for (Uri uri : uris) {
+                long id = uri != null ? getTodoId(uri) : -1;
+                if (id < 0 || (flags & ContentResolver.NOTIFY_INSERT) != 0) {
+                    // Where a new todo goes in the list only a full query can tell.
+                    mReloadAll = true;
+                } else {
+                    Integer previous = mChangedTodos.get(id);
+                    mChangedTodos.put(id, previous == null ? flags : previous | flags);
+                }
+            }
+        }
+        onContentChanged();
+    }
+
+    private static long getTodoId(Uri uri) {
+        List<String> segments = uri.getPathSegments();
+        if (!NotePad.AUTHORITY.equals(uri.getAuthority())
+                || segments.size() != NotePad.Todos.TODO_ID_PATH_POSITION + 1) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(segments.get(NotePad.Todos.TODO_ID_PATH_POSITION));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public TodoListModel loadInBackground() {
+        TodoListModel base;
+        Map<Long, Integer> changed;
+        synchronized (this) {
+            if (isLoadInBackgroundCanceled()) {
+                throw new OperationCanceledException();
+            }
+            mCancellationSignal = new CancellationSignal();
+
+            base = mModel;
+            changed = mChangedTodos;
+            if (mReloadAll || changed.isEmpty() || changed.size() > MAX_CHANGED_TODOS) {
+                base = null;
+            }
+            mChangedTodos = new HashMap<>();
+            mReloadAll = false;
+        }
+        try {
+            if (base != null) {
+                TodoListModel model = loadChanges(base, changed);
+                if (model != null) {
+                    return model;
+                }
+            }
+            Cursor c = ContentResolverCompat.query(getContext().getContentResolver(), NotePad.Todos.CONTENT_URI,
+                    mProjection, null, null, null, mCancellationSignal);
+            if (c == null) {
+                return TodoListModel.EMPTY;
+            }
+            try {
+                return TodoListModel.from(c);
+            } finally {
+                c.close();
+            }
+        } finally {
+            synchronized (this) {
+                mCancellationSignal = null;
+            }
+        }
+    }
+
+    /**
+     * Re-reads the todos in {@code changed} that may still exist and patches them into
+     * {@code base}, or returns null if the whole list has to be loaded instead.
+     */
+    private TodoListModel loadChanges(TodoListModel base, Map<Long, Integer> changed) {
+        ContentResolver resolver = getContext().getContentResolver();
+        Cursor[] rows = new Cursor[changed.size()];
+        int count = 0;
+        try {
+            for (Map.Entry<Long, Integer> entry : changed.entrySet()) {
+                if (entry.getValue() == ContentResolver.NOTIFY_DELETE) {
+                    continue;
+                }
+                Cursor c = ContentResolverCompat.query(resolver,
+                        ContentUris.withAppendedId(NotePad.Todos.CONTENT_URI, entry.getKey()), mProjection,
+                        null, null, null, mCancellationSignal);
+                if (c == null) {
+                    return null;
+                }
+                rows[count++] = c;
+            }
+            TodoListModel changes = count > 0
+                    ? TodoListModel.from(new MergeCursor(Arrays.copyOf(rows, count)))
+                    : TodoListModel.EMPTY;
+            return base.withChanges(changed.keySet(), changes);
+        } finally {
+            for (int i = 0; i < count; i++) {
+                rows[i].close();
+            }
+        }
+    }
+
+    @Override
+    public void cancelLoadInBackground() {
+        super.cancelLoadInBackground();
+        synchronized (this) {
+            if (mCancellationSignal != null) {
+                mCancellationSignal.cancel();
+            }
+        }
+    }
+
+    @Override
+    public void onCanceled(TodoListModel model) {
+        // The changes the canceled load took are lost, so the next load reads everything.
+        synchronized (this) {
+            mReloadAll = true;
+        }
+    }
+
+    @Override
+    public void deliverResult(TodoListModel model) {
+        if (isReset()) {
+            return;
+        }
+        synchronized (this) {
+            mModel = model;
+        }
+        if (isStarted()) {
+            super.deliverResult(model);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (!mObserving) {
+            getContext().getContentResolver().registerContentObserver(NotePad.Todos.CONTENT_URI, true, mObserver);
+            mObserving = true;
+        }
+        TodoListModel model;
+        synchronized (this) {
+            model = mModel;
+        }
+        if (model != null) {
+            deliverResult(model);
+        }
+        if (takeContentChanged() || model == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+        if (mObserving) {
+            getContext().getContentResolver().unregisterContentObserver(mObserver);
+            mObserving = false;
+        }
+        synchronized (this) {
+            mModel = null;
+            mChangedTodos = new HashMap<>();
+            mReloadAll = false;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.android.notepad;
+
+import android.database.Cursor;
+import android.graphics.Color;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Immutable contents of the todo list, read from a cursor in one pass.
+ *
+ * Column indexes are looked up once per cursor and colors are parsed once per row, so binding a
+ * row only reads these arrays.
+ */
+final class TodoListModel {
+
+    static final TodoListModel EMPTY = new TodoListModel(new long[0], new String[0], new int[0], new boolean[0]);
+
+    private final long[] mIds;
+    private final String[] mTexts;
+    private final int[] mColors;
+    private final boolean[] mCompleted;
+
+    private TodoListModel(long[] ids, String[] texts, int[] colors, boolean[] completed) {
+        mIds = ids;
+        mTexts = texts;
+        mColors = colors;
+        mCompleted = completed;
+    }
+
+    /**
+     * Reads every row of {@code c}, which needs the _id, text, color and completed columns.
+     */
+    static TodoListModel from(Cursor c) {
+        int idCol = c.getColumnIndexOrThrow(NotePad.Todos._ID);
+        int textCol = c.getColumnIndexOrThrow(NotePad.Todos.COLUMN_NAME_TEXT);
+        int colorCol = c.getColumnIndexOrThrow(NotePad.Todos.COLUMN_NAME_COLOR);
+        int completedCol = c.getColumnIndexOrThrow(NotePad.Todos.COLUMN_NAME_IS_COMPLETED);
+
+        int count = c.getCount();
+        long[] ids = new long[count];
+        String[] texts = new String[count];
+        int[] colors = new int[count];
+        boolean[] completed = new boolean[count];
+
+        // Most todos share one of a handful of colors, so remember the last one parsed
+        String lastColor = null;
+        int lastParsed = Color.WHITE;
+
+        c.moveToPosition(-1);
+        for (int i = 0; i < count && c.moveToNext(); i++) {
+            ids[i] = c.getLong(idCol);
+            texts[i] = c.getString(textCol);
+            String color = c.getString(colorCol);
+            if (color != null && !color.equals(lastColor)) {
+                lastParsed = parseColor(color);
+                lastColor = color;
+            }
+            colors[i] = color != null ? lastParsed : Color.WHITE;
+            completed[i] = c.getInt(completedCol) == 1;
+        }
+        return new TodoListModel(ids, texts, colors, completed);
+    }
+
+    /**
+     * Returns this list with the todos in {@code changed} brought up to date: those {@code rows}
+     * holds take its values and keep their place, the others are left out. Returns null if
+     * {@code rows} holds a todo this list does not, as only a full query can tell where it goes.
+     */
+    TodoListModel withChanges(Set<Long> changed, TodoListModel rows) {
+        for (long id : rows.mIds) {
+            if (indexOf(id) < 0) {
+                return null;
+            }
+        }
+
+        long[] ids = new long[mIds.length];
+        String[] texts = new String[mIds.length];
+        int[] colors = new int[mIds.length];
+        boolean[] completed = new boolean[mIds.length];
+        int count = 0;
+        for (int i = 0; i < mIds.length; i++) {
+            TodoListModel source = this;
+            int position = i;
+            if (changed.contains(mIds[i])) {
+                source = rows;
+                position = rows.indexOf(mIds[i]);
+                if (position < 0) {
+                    continue;
+                }
+            }
+            ids[count] = source.mIds[position];
+            texts[count] = source.mTexts[position];
+            colors[count] = source.mColors[position];
+            completed[count] = source.mCompleted[position];
+            count++;
+        }
+        if (count < mIds.length) {
+            ids = Arrays.copyOf(ids, count);
+            texts = Arrays.copyOf(texts, count);
+            colors = Arrays.copyOf(colors, count);
+            completed = Arrays.copyOf(completed, count);
+        }
+        return new TodoListModel(ids, texts, colors, completed);
+    }
+
+    private static int parseColor(String color) {
+        try {
+            return Color.parseColor(color);
+        } catch (IllegalArgumentException e) {
+            return Color.WHITE;
+        }
+    }
+
+    int getCount() {
+        return mIds.length;
+    }
+
+    long getId(int position) {
+        return mIds[position];
+    }
+
+    String getText(int position) {
+        return mTexts[position];
+    }
+
+    int getColor(int position) {
+        return mColors[position];
+    }
+
+    boolean isCompleted(int position) {
+        return mCompleted[position];
+    }
+
+    /**
+     * Returns the position of the todo with {@code id}, or -1 if the list does not hold it.
+     */
+    int indexOf(long id) {
+        for (int i = 0; i < mIds.length; i++) {
+            if (mIds[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.android.notepad;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Checks {@link NoteBitmap} against a {@link TreeSet} holding the same ids, across the size at
+ * which a container switches between a sorted array and a bitset, and across the 65536-id
+ * boundaries between containers.
+ */
+public class NoteBitmapTest {
+
+    // Values an array container holds at most, and ids per container
+    private static final int MAX_ARRAY = 4096;
+    private static final long CONTAINER = 65536;
+
+    @Test
+    public void containerSwitchesToBitsetAndBack() {
+        NoteBitmap bitmap = new NoteBitmap();
+        TreeSet<Long> oracle = new TreeSet<>();
+        // Every other id, so the bitset is half full and a dense range can't hide mistakes
+        for (long id = 0; oracle.size() < MAX_ARRAY; id += 2) {
+            assertTrue(bitmap.add(id));
+            oracle.add(id);
+        }
+        assertMatches(oracle, bitmap);
+
+        // One past the array limit
+        assertTrue(bitmap.add(1));
+        oracle.add(1L);
+        assertFalse(bitmap.add(1));
+        assertMatches(oracle, bitmap);
+
+        // Back down to the limit, then below it, then up again
+        assertTrue(bitmap.remove(0));
+        oracle.remove(0L);
+        assertFalse(bitmap.remove(0));
+        assertMatches(oracle, bitmap);
+        assertTrue(bitmap.remove(2));
+        oracle.remove(2L);
+        assertMatches(oracle, bitmap);
+        for (long id = 3; id < 21; id += 2) {
+            assertTrue(bitmap.add(id));
+            oracle.add(id);
+        }
+        assertMatches(oracle, bitmap);
+
+        for (Long id : oracle.toArray(new Long[0])) {
+            assertTrue(bitmap.remove(id));
+            oracle.remove(id);
+            if (oracle.size() % 997 == 0) {
+                assertMatches(oracle, bitmap);
+            }
+        }
+        assertTrue(bitmap.isEmpty());
+        assertMatches(oracle, bitmap);
+    }
+
+    @Test
+    public void idsAtContainerBoundaries() {
+        long[] ids = {
+                0, 1, CONTAINER - 1, CONTAINER, CONTAINER + 1, 2 * CONTAINER - 1, 2 * CONTAINER,
+                7 * CONTAINER - 1, 7 * CONTAINER, NoteBitmap.MAX_ID - CONTAINER, NoteBitmap.MAX_ID - 1,
+                NoteBitmap.MAX_ID};
+        NoteBitmap bitmap = new NoteBitmap();
+        TreeSet<Long> oracle = new TreeSet<>();
+        // Added out of order, so containers are inserted in front of and between others
+        for (int i = ids.length - 1; i >= 0; i -= 2) {
+            assertTrue(bitmap.add(ids[i]));
+            oracle.add(ids[i]);
+        }
+        for (int i = 0; i < ids.length; i += 2) {
+            assertTrue(bitmap.add(ids[i]));
+            oracle.add(ids[i]);
+        }
+        assertMatches(oracle, bitmap);
+        assertFalse(bitmap.contains(3 * CONTAINER));
+        assertFalse(bitmap.contains(-1));
+        assertFalse(bitmap.contains(NoteBitmap.MAX_ID + 1));
+
+        // Emptying a container in the middle closes the gap it leaves
+        assertTrue(bitmap.remove(CONTAINER));
+        assertTrue(bitmap.remove(CONTAINER + 1));
+        oracle.remove(CONTAINER);
+        oracle.remove(CONTAINER + 1);
+        assertMatches(oracle, bitmap);
+        assertTrue(bitmap.add(CONTAINER + 1));
+        oracle.add(CONTAINER + 1);
+        assertMatches(oracle, bitmap);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void idAboveMaxIsRejected() {
+        new NoteBitmap().add(NoteBitmap.MAX_ID + 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeIdIsRejected() {
+        new NoteBitmap().add(-1);
+    }
+
+    @Test
+    public void setOperationsAtTheArrayLimit() {
+        // Disjoint arrays whose union just fits an array, and one that just doesn't
+        checkOperations(range(0, 2048, 1), range(2048, 2048, 1));
+        checkOperations(range(0, 2048, 1), range(2048, 2049, 1));
+        // Overlapping arrays whose sizes add up past the limit, but whose union fits in one
+        checkOperations(range(0, 3000, 1), range(1000, 3000, 1));
+        // Bitsets whose intersection is just at and just past the limit
+        checkOperations(range(0, 6000, 1), range(6000 - MAX_ARRAY, 6000, 1));
+        checkOperations(range(0, 6000, 1), range(6000 - MAX_ARRAY - 1, 6000, 1));
+        // A bitset against an array, both ways round
+        checkOperations(range(0, 10000, 3), range(5, 100, 7));
+        checkOperations(range(5, 100, 7), range(0, 10000, 3));
+    }
+
+    @Test
+    public void randomSetOperationsMatchTreeSet() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            checkOperations(randomIds(random), randomIds(random));
+        }
+    }
+
+    @Test
+    public void randomAddsAndRemovesMatchTreeSet() {
+        Random random = new Random(7);
+        NoteBitmap bitmap = new NoteBitmap();
+        TreeSet<Long> oracle = new TreeSet<>();
+        for (int i = 0; i < 200_000; i++) {
+            // Three containers, so each swings across the array limit many times
+            long id = random.nextInt(3) * CONTAINER + random.nextInt(10_000);
+            if (random.nextInt(100) < 55) {
+                assertEquals(oracle.add(id), bitmap.add(id));
+            } else {
+                assertEquals(oracle.remove(id), bitmap.remove(id));
+            }
+            if (i % 10_000 == 0) {
+                assertMatches(oracle, bitmap);
+            }
+        }
+        assertMatches(oracle, bitmap);
+    }
+
+    @Test
+    public void copyIsIndependent() {
+        TreeSet<Long> ids = range(0, 5000, 1);
+        ids.addAll(range(CONTAINER, 10, 1));
+        NoteBitmap original = bitmapOf(ids);
+        NoteBitmap copy = original.copy();
+        assertMatches(ids, copy);
+
+        copy.add(CONTAINER + 100);
+        copy.remove(0);
+        copy.remove(CONTAINER);
+        assertMatches(ids, original);
+    }
+
+    /**
+     * Checks and, or and andCardinality of {@code a} and {@code b} against the oracle, and that
+     * their results can be changed further without touching the operands.
+     */
+    private static void checkOperations(TreeSet<Long> a, TreeSet<Long> b) {
+        NoteBitmap bitmapA = bitmapOf(a);
+        NoteBitmap bitmapB = bitmapOf(b);
+
+        TreeSet<Long> and = new TreeSet<>(a);
+        and.retainAll(b);
+        TreeSet<Long> or = new TreeSet<>(a);
+        or.addAll(b);
+
+        NoteBitmap andBitmap = NoteBitmap.and(bitmapA, bitmapB);
+        NoteBitmap orBitmap = NoteBitmap.or(bitmapA, bitmapB);
+        assertMatches(and, andBitmap);
+        assertMatches(or, orBitmap);
+        assertEquals(and.size(), NoteBitmap.andCardinality(bitmapA, bitmapB));
+        assertEquals(and.size(), NoteBitmap.andCardinality(bitmapB, bitmapA));
+
+        // Grow and shrink the results, whose containers may be exactly full
+        for (long id = 0; id < 3 * CONTAINER; id += 4099) {
+            assertEquals(and.add(id), andBitmap.add(id));
+            assertEquals(or.remove(id), orBitmap.remove(id));
+        }
+        assertMatches(and, andBitmap);
+        assertMatches(or, orBitmap);
+        assertMatches(a, bitmapA);
+        assertMatches(b, bitmapB);
+    }
+
+    private static TreeSet<Long> randomIds(Random random) {
+        // Sparse, around the array limit, or dense
+        int[] sizes = {1, 50, MAX_ARRAY - 1, MAX_ARRAY, MAX_ARRAY + 1, 30_000};
+        TreeSet<Long> ids = new TreeSet<>();
+        // Up to three of the first four containers, so the two sides share some and not others
+        for (int c = random.nextInt(4); c > 0; c--) {
+            long base = random.nextInt(4) * CONTAINER;
+            int size = sizes[random.nextInt(sizes.length)];
+            int span = size > MAX_ARRAY ? (int) CONTAINER : Math.max(size * 4, 64);
+            int start = random.nextInt((int) CONTAINER - span + 1);
+            TreeSet<Long> container = new TreeSet<>();
+            while (container.size() < size) {
+                container.add(base + start + random.nextInt(span));
+            }
+            ids.addAll(container);
+        }
+        return ids;
+    }
+
+    private static TreeSet<Long> range(long start, int count, int step) {
+        TreeSet<Long> ids = new TreeSet<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(start + (long) i * step);
+        }
+        return ids;
+    }
+
+    private static NoteBitmap bitmapOf(TreeSet<Long> ids) {
+        NoteBitmap bitmap = new NoteBitmap();
+        for (long id : ids) {
+            bitmap.add(id);
+        }
+        return bitmap;
+    }
+
+    private static void assertMatches(TreeSet<Long> expected, NoteBitmap actual) {
+        long[] ids = new long[expected.size()];
+        int n = 0;
+        for (long id : expected) {
+            ids[n++] = id;
+        }
+        assertArrayEquals(ids, actual.toArray());
+        assertEquals(expected.size(), actual.getCardinality());
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+        for (long id : ids) {
+            assertTrue(actual.contains(id));
+            assertEquals(expected.contains(id + 1), actual.contains(id + 1));
+        }
+    }
+}
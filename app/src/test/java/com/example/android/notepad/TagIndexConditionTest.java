@@ -0,0 +1,132 @@
+package com.example.android.notepad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.TreeSet;
+
+/**
+ * Runs the conditions {@link TagIndex#condition} builds against SQLite, for tag filters whose
+ * notes just fit in the listed ids and just don't, and checks that each selects exactly the
+ * notes that carry the tags.
+ */
+public class TagIndexConditionTest {
+
+    private static final long TAG_A = 1;
+    private static final long TAG_B = 2;
+    private static final String ID_COLUMN = NotePad.Notes.TABLE_NAME + "." + NotePad.Notes._ID;
+
+    private Connection mDb;
+
+    @Before
+    public void setUp() throws SQLException {
+        mDb = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try (Statement s = mDb.createStatement()) {
+            s.execute("CREATE TABLE " + NotePad.Notes.TABLE_NAME + " (" + NotePad.Notes._ID + " INTEGER PRIMARY KEY)");
+            s.execute("CREATE TABLE " + NotePad.NoteTags.TABLE_NAME + " ("
+                    + NotePad.NoteTags.COLUMN_NAME_NOTE_ID + " INTEGER NOT NULL, "
+                    + NotePad.NoteTags.COLUMN_NAME_TAG_ID + " INTEGER NOT NULL, "
+                    + "PRIMARY KEY (" + NotePad.NoteTags.COLUMN_NAME_NOTE_ID + ", "
+                    + NotePad.NoteTags.COLUMN_NAME_TAG_ID + ")) WITHOUT ROWID");
+            s.execute("WITH RECURSIVE ids(id) AS (SELECT 1 UNION ALL SELECT id + 1 FROM ids WHERE id < 1000) "
+                    + "INSERT INTO " + NotePad.Notes.TABLE_NAME + " SELECT id FROM ids");
+        }
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        mDb.close();
+    }
+
+    @Test
+    public void allTagsAroundTheListLimit() throws SQLException {
+        for (int n = TagIndex.MAX_LISTED_NOTES - 1; n <= TagIndex.MAX_LISTED_NOTES + 1; n++) {
+            // Tag A on notes 1 to n + 50 and tag B on 51 to n + 100 share n notes.
+            clearTags();
+            tag(TAG_A, 1, n + 50);
+            tag(TAG_B, 51, n + 100);
+            TreeSet<Long> expected = range(51, n + 50);
+            assertSelects(expected, true);
+        }
+    }
+
+    @Test
+    public void anyTagAroundTheListLimit() throws SQLException {
+        for (int n = TagIndex.MAX_LISTED_NOTES - 1; n <= TagIndex.MAX_LISTED_NOTES + 1; n++) {
+            // Overlapping, so the union is smaller than the two tags' counts added up
+            clearTags();
+            tag(TAG_A, 1, n / 2 + 10);
+            tag(TAG_B, n / 2 - 10, n);
+            assertSelects(range(1, n), false);
+        }
+    }
+
+    @Test
+    public void noTaggedNotesSelectsNothing() throws SQLException {
+        clearTags();
+        tag(TAG_A, 1, 10);
+        tag(TAG_B, 11, 20);
+        assertSelects(new TreeSet<>(), true);
+    }
+
+    /**
+     * Checks the condition for the notes carrying both or either tag, given as {@code expected},
+     * the set the tag index would have selected.
+     */
+    private void assertSelects(TreeSet<Long> expected, boolean matchAll) throws SQLException {
+        NoteBitmap notes = new NoteBitmap();
+        for (long id : expected) {
+            notes.add(id);
+        }
+        String condition = TagIndex.condition(notes, new long[]{TAG_A, TAG_B}, matchAll, ID_COLUMN);
+
+        boolean listed = expected.size() <= TagIndex.MAX_LISTED_NOTES;
+        assertEquals(condition, listed, !condition.contains("EXISTS"));
+        if (listed && !expected.isEmpty()) {
+            assertTrue(condition, condition.startsWith(ID_COLUMN + " IN ("));
+        }
+
+        TreeSet<Long> selected = new TreeSet<>();
+        try (Statement s = mDb.createStatement();
+             ResultSet rows = s.executeQuery("SELECT " + ID_COLUMN + " FROM " + NotePad.Notes.TABLE_NAME
+                     + " WHERE " + condition)) {
+            while (rows.next()) {
+                assertFalse(selected.contains(rows.getLong(1)));
+                selected.add(rows.getLong(1));
+            }
+        }
+        assertEquals(expected.size() + " notes, matchAll = " + matchAll, expected, selected);
+    }
+
+    private void clearTags() throws SQLException {
+        try (Statement s = mDb.createStatement()) {
+            s.execute("DELETE FROM " + NotePad.NoteTags.TABLE_NAME);
+        }
+    }
+
+    private void tag(long tagId, long fromNote, long toNote) throws SQLException {
+        try (Statement s = mDb.createStatement()) {
+            s.execute("INSERT INTO " + NotePad.NoteTags.TABLE_NAME + " SELECT " + NotePad.Notes._ID + ", " + tagId
+                    + " FROM " + NotePad.Notes.TABLE_NAME + " WHERE " + NotePad.Notes._ID
+                    + " BETWEEN " + fromNote + " AND " + toNote);
+        }
+    }
+
+    private static TreeSet<Long> range(long from, long to) {
+        TreeSet<Long> ids = new TreeSet<>();
+        for (long id = from; id <= to; id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+}